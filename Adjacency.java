@@ -0,0 +1,258 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/** A growable list of distinct user IDs, used to store the followees of a user.
+ *  The IDs are kept in insertion order, except that removing an ID moves the last ID into its place.
+ *  Appending is amortized O(1). When the list gets longer than indexThreshold, membership checks
+ *  use an additional index instead of scanning the list. The index is a bitset over the user IDs if the
+ *  list is dense (its IDs are all below size * bitsetDensity), and a hash set otherwise.
+ *  For counting common IDs, a sorted copy of the IDs is made when needed, and kept until the list changes. */
+class Adjacency {
+    static int indexThreshold = 32; // Lists longer than this get an index
+    static int bitsetDensity = 64;  // A bitset is used while it needs at most one long per ID in the list
+    static int probeRatio = 16;     // Counting common IDs probes the longer list if it is this many times longer
+
+    private static final int[] EMPTY = new int[0];
+
+    private int[] ids;         // the IDs in this list, in ids[0] ... ids[size - 1]
+    private int size;          // number of IDs in this list
+    private IntHashSet index;  // the same IDs, for fast membership checks of sparse lists; null if not used
+    private long[] bits;       // the same IDs as a bitset, for dense lists; null if not used
+    private int[] sorted;      // the same IDs in increasing order, or null if not computed since the last change
+
+    /** Creates an empty list with room for the given number of IDs. */
+    Adjacency(int capacity) {
+        this.ids = (capacity == 0) ? EMPTY : new int[capacity];
+        this.size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Returns the number of IDs that this list can hold before it has to grow. */
+    int capacity() {
+        return ids.length;
+    }
+
+    /** Returns the i'th ID of this list. */
+    int get(int i) {
+        return ids[i];
+    }
+
+    /** Calls the given action on each ID of this list, in list order. */
+    void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(ids[i]);
+        }
+    }
+
+    /** Returns the IDs of this list, in list order, in an array of exactly size() elements.
+     *  The returned array must not be changed. */
+    int[] toArray() {
+        return Arrays.copyOf(ids, size);
+    }
+
+    boolean contains(int id) {
+        if (bits != null) {
+            return (id >> 6) < bits.length && (bits[id >> 6] & (1L << id)) != 0;
+        }
+        if (index != null) {
+            return index.contains(id);
+        }
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Appends the given ID. Returns false if the ID is already in this list. */
+    boolean add(int id) {
+        if (contains(id)) {
+            return false;
+        }
+        ensureCapacity(size + 1);
+        ids[size++] = id;
+        sorted = null;
+        if (bits != null) {
+            if ((id >> 6) >= bits.length) {
+                if (id >= (long) size * bitsetDensity) {
+                    buildIndex(); // No longer dense: switches to a hash set
+                    return true;
+                }
+                bits = Arrays.copyOf(bits, Math.max((id >> 6) + 1, bits.length * 2));
+            }
+            bits[id >> 6] |= 1L << id;
+        } else if (index != null) {
+            index.add(id);
+        } else if (size > indexThreshold) {
+            buildIndex();
+        }
+        return true;
+    }
+
+    /** Removes the given ID, and moves the last ID into its place. Returns false if the ID is not in this list. */
+    boolean remove(int id) {
+        if (bits != null) {
+            if (!contains(id)) {
+                return false;
+            }
+            bits[id >> 6] &= ~(1L << id);
+        } else if (index != null && !index.remove(id)) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) {
+                ids[i] = ids[--size];
+                sorted = null;
+                if (size <= indexThreshold / 2) {
+                    index = null; // Short again; scanning is cheaper than an index
+                    bits = null;
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Removes all the IDs, and releases the memory of this list. */
+    void clear() {
+        ids = EMPTY;
+        size = 0;
+        index = null;
+        bits = null;
+        sorted = null;
+    }
+
+    /** Makes sure that this list can hold the given number of IDs without growing again. */
+    void ensureCapacity(int capacity) {
+        if (capacity > ids.length) {
+            int[] grown = new int[Math.max(capacity, Math.max(4, ids.length + (ids.length >> 1)))];
+            System.arraycopy(ids, 0, grown, 0, size);
+            ids = grown;
+        }
+    }
+
+    /** Shrinks the capacity of this list to its size, drops its sorted copy, and rebuilds its index
+     *  in the form that currently fits its density. */
+    void trimToSize() {
+        sorted = null;
+        if (size < ids.length) {
+            int[] trimmed = (size == 0) ? EMPTY : new int[size];
+            System.arraycopy(ids, 0, trimmed, 0, size);
+            ids = trimmed;
+        }
+        if (index != null || bits != null) {
+            buildIndex();
+        }
+    }
+
+    /** Replaces each ID in this list by newIds[id], and drops the IDs for which newIds[id] is -1.
+     *  newIds must keep the order of the IDs that it does not drop. */
+    void remap(int[] newIds) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            int newId = newIds[ids[i]];
+            if (newId >= 0) {
+                ids[kept++] = newId;
+            }
+        }
+        size = kept;
+        sorted = null;
+        index = null;
+        bits = null;
+        if (size > indexThreshold) {
+            buildIndex();
+        }
+    }
+
+    /** Copies the IDs of this list into the given array, starting at the given position. */
+    void copyTo(int[] dest, int start) {
+        System.arraycopy(ids, 0, dest, start, size);
+    }
+
+    /** Returns the number of IDs that are in both this list and the other list.
+     *  If both lists have bitsets, they are intersected word by word.
+     *  Short lists are compared by membership checks. When one list is much longer than the other,
+     *  the IDs of the shorter list are looked up in the hash index of the longer one.
+     *  Otherwise, the sorted copies of the two lists are merged, in O(size + other.size). */
+    int countCommon(Adjacency other) {
+        if (other instanceof CopyOnWriteAdjacency) {
+            return other.countCommon(this);
+        }
+        if (bits != null && other.bits != null) {
+            int count = 0;
+            for (int i = Math.min(bits.length, other.bits.length) - 1; i >= 0; i--) {
+                count += Long.bitCount(bits[i] & other.bits[i]);
+            }
+            return count;
+        }
+        Adjacency shorter = (size <= other.size) ? this : other;
+        Adjacency longer = (shorter == this) ? other : this;
+        if (longer.size <= indexThreshold || (long) shorter.size * probeRatio <= longer.size) {
+            int count = 0;
+            for (int i = 0; i < shorter.size; i++) {
+                if (longer.contains(shorter.ids[i])) {
+                    count++;
+                }
+            }
+            return count;
+        }
+        return countCommonSorted(sortedIds(), other.sortedIds());
+    }
+
+    /** Returns the number of IDs that are in both of the given sorted arrays, by merging them. */
+    static int countCommonSorted(int[] a, int[] b) {
+        int i = 0, j = 0, count = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    /** Returns the IDs of this list in increasing order. The returned array must not be changed. */
+    int[] sortedIds() {
+        if (sorted == null) {
+            int[] copy = Arrays.copyOf(ids, size);
+            Arrays.sort(copy);
+            sorted = copy;
+        }
+        return sorted;
+    }
+
+    /** Builds a bitset or a hash set of the IDs, depending on how dense they are. */
+    private void buildIndex() {
+        int maxId = -1;
+        for (int i = 0; i < size; i++) {
+            maxId = Math.max(maxId, ids[i]);
+        }
+        if (maxId < (long) size * bitsetDensity) {
+            index = null;
+            bits = new long[(maxId >> 6) + 1];
+            for (int i = 0; i < size; i++) {
+                bits[ids[i] >> 6] |= 1L << ids[i];
+            }
+        } else {
+            bits = null;
+            index = new IntHashSet(size);
+            for (int i = 0; i < size; i++) {
+                index.add(ids[i]);
+            }
+        }
+    }
+
+    /** Returns true if this list keeps its IDs in a bitset. */
+    boolean isBitset() {
+        return bits != null;
+    }
+}
@@ -0,0 +1,266 @@
+import java.io.IOException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiPredicate;
+
+/** A social network that many threads can use at the same time.
+ *  Every user is guarded by one of a fixed number of read-write locks (lock stripes), chosen by the user's ID.
+ *  Adding a follow relationship locks only the stripes of its two users, so threads that change
+ *  different users do not wait for each other. toString, writeTo and freeze hold the read locks of all the stripes,
+ *  and see a consistent network. Adding a user is a single atomic check-and-insert: two threads adding
+ *  the same name cannot both succeed. Removing a user locks the whole network, and leaves the user's ID taken
+ *  until compact is called, which must happen while no other thread uses the network.
+ *  Users in this network must be changed only through the network's methods.
+ *  The followee and follower lists of the users are copy-on-write lists, so reads never lock:
+ *  getUser, User.follows, User.countMutual, recommendWhoToFollow and mostPopularUser see each user's
+ *  list as of some moment, while other threads keep changing the network. */
+public class ConcurrentNetwork extends Network {
+    private final ReentrantReadWriteLock[] stripes; // stripes[id & (stripes.length - 1)] guards the user with that ID
+    private final ReentrantReadWriteLock registry;  // write-locked while adding a user, read-locked by whole-network queries
+    private final ThreadLocal<MutualCounter> counters;
+
+    /** Creates an empty network that grows as users are added, without a maximum number of users.
+     *  Users can follow any number of users. */
+    public ConcurrentNetwork() {
+        this(16, DEFAULT_GROWTH_FACTOR, Integer.MAX_VALUE);
+    }
+
+    /** Creates a network with a given maximum number of users. Users can follow any number of users. */
+    public ConcurrentNetwork(int maxUserCount) {
+        this(maxUserCount, Integer.MAX_VALUE);
+    }
+
+    /** Creates a network with a given maximum number of users, in which each user
+     *  can follow at most followeeLimit users. */
+    public ConcurrentNetwork(int maxUserCount, int followeeLimit) {
+        this(maxUserCount, DEFAULT_GROWTH_FACTOR, maxUserCount, followeeLimit);
+    }
+
+    /** Creates a network with room for initialCapacity users, that grows by growthFactor whenever it is full,
+     *  up to maxUserCount users. Users can follow any number of users. */
+    public ConcurrentNetwork(int initialCapacity, double growthFactor, int maxUserCount) {
+        this(initialCapacity, growthFactor, maxUserCount, Integer.MAX_VALUE);
+    }
+
+    private ConcurrentNetwork(int initialCapacity, double growthFactor, int maxUserCount, int followeeLimit) {
+        super(initialCapacity, growthFactor, maxUserCount, followeeLimit);
+        // The smallest power of 2 that is at least 16 stripes per processor
+        int stripeCount = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 16 - 1) * 2;
+        this.stripes = new ReentrantReadWriteLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+        this.registry = new ReentrantReadWriteLock();
+        this.counters = new ThreadLocal<MutualCounter>();
+    }
+
+    @Override
+    public boolean addUser(String name) {
+        registry.writeLock().lock();
+        try {
+            return super.addUser(name);
+        } finally {
+            registry.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean addFollowee(String name1, String name2) {
+        return changeFollowee(name1, name2, super::addFollowee);
+    }
+
+    /** Locks the whole network while the batch is added, so no other change runs in the middle of it.
+     *  Reads that take no locks, such as User.follows, can see part of the batch. */
+    @Override
+    public boolean[] addFollowees(String[][] pairs) {
+        lockAll(true);
+        try {
+            return super.addFollowees(pairs);
+        } finally {
+            unlockAll(true);
+        }
+    }
+
+    @Override
+    public boolean removeFollowee(String name1, String name2) {
+        return changeFollowee(name1, name2, super::removeFollowee);
+    }
+
+    /** Locks the whole network, since the removed user's followers can be anywhere in it.
+     *  The ID of the removed user stays taken until compact is called: this network never compacts itself,
+     *  since compaction changes the IDs that readers without locks are using. */
+    @Override
+    public boolean removeUser(String name) {
+        lockAll(true);
+        try {
+            return super.removeUser(name);
+        } finally {
+            unlockAll(true);
+        }
+    }
+
+    /** Keeps the IDs of removed users until compact is called. */
+    @Override
+    boolean compactsAutomatically() {
+        return false;
+    }
+
+    /** Locks the whole network. Since compaction changes the IDs of users, it must not run
+     *  while other threads are reading the network without locks, for example in recommendWhoToFollow:
+     *  the caller must stop all other use of the network first. Removed users take up memory until then. */
+    @Override
+    public void compact() {
+        lockAll(true);
+        try {
+            super.compact();
+        } finally {
+            unlockAll(true);
+        }
+    }
+
+    @Override
+    public NetworkSnapshot freeze() {
+        lockAll(false);
+        try {
+            return super.freeze();
+        } finally {
+            unlockAll(false);
+        }
+    }
+
+    @Override
+    public String toString() {
+        lockAll(false);
+        try {
+            return super.toString();
+        } finally {
+            unlockAll(false);
+        }
+    }
+
+    @Override
+    public void writeTo(Appendable out) throws IOException {
+        lockAll(false);
+        try {
+            super.writeTo(out);
+        } finally {
+            unlockAll(false);
+        }
+    }
+
+    @Override
+    public void setTrackFollowers(boolean trackFollowers) {
+        lockAll(true);
+        try {
+            super.setTrackFollowers(trackFollowers);
+        } finally {
+            unlockAll(true);
+        }
+    }
+
+    @Override
+    public void setFolloweeLimit(int followeeLimit) {
+        lockAll(true);
+        try {
+            super.setFolloweeLimit(followeeLimit);
+        } finally {
+            unlockAll(true);
+        }
+    }
+
+    /** Locks the whole network. Since this compacts the network, the caller must stop
+     *  all other use of the network first, as for compact. */
+    @Override
+    public void trimToSize() {
+        lockAll(true);
+        try {
+            super.trimToSize();
+        } finally {
+            unlockAll(true);
+        }
+    }
+
+    /** Uses copy-on-write lists, so that readers need no locks. */
+    @Override
+    Adjacency newAdjacency() {
+        return new CopyOnWriteAdjacency();
+    }
+
+    /** Keeps no leaderboard: every change of a follow relationship would have to lock it, so threads that
+     *  change different users would wait for each other. mostPopularUser checks every user instead. */
+    @Override
+    Leaderboard newLeaderboard(int capacity) {
+        return null;
+    }
+
+    /** Gives each thread its own scratch counter, since several recommendations can run at the same time. */
+    @Override
+    MutualCounter mutualCounter() {
+        MutualCounter counter = counters.get();
+        if (counter == null || counter.capacity() < capacity()) {
+            counter = new MutualCounter(capacity());
+            counters.set(counter);
+        }
+        return counter;
+    }
+
+    /** Applies the given change to the follow relationship of the two users, holding the write locks
+     *  of their two stripes. The stripes are locked in increasing stripe order, like lockAll,
+     *  so that no two threads can deadlock. */
+    private boolean changeFollowee(String name1, String name2, BiPredicate<String, String> change) {
+        int mask = stripes.length - 1;
+        while (true) {
+            User user1 = getUser(name1);
+            User user2 = getUser(name2);
+            if (user1 == null || user2 == null) {
+                return false;
+            }
+            ReentrantReadWriteLock first = stripes[Math.min(user1.getId() & mask, user2.getId() & mask)];
+            ReentrantReadWriteLock second = stripes[Math.max(user1.getId() & mask, user2.getId() & mask)];
+            first.writeLock().lock();
+            second.writeLock().lock(); // Reentrant, so this is fine when both users share a stripe
+            try {
+                // Removing a user, or compacting, may have happened before the locks were taken,
+                // but cannot happen while they are held
+                if (getUser(name1) == user1 && getUser(name2) == user2
+                        && first == stripes[Math.min(user1.getId() & mask, user2.getId() & mask)]
+                        && second == stripes[Math.max(user1.getId() & mask, user2.getId() & mask)]) {
+                    return change.test(name1, name2);
+                }
+            } finally {
+                second.writeLock().unlock();
+                first.writeLock().unlock();
+            }
+        }
+    }
+
+    /** Locks the registry and all the stripes, always in the same order, for reading or for writing. */
+    private void lockAll(boolean write) {
+        lock(registry, write);
+        for (ReentrantReadWriteLock stripe : stripes) {
+            lock(stripe, write);
+        }
+    }
+
+    private void unlockAll(boolean write) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            unlock(stripes[i], write);
+        }
+        unlock(registry, write);
+    }
+
+    private static void lock(ReentrantReadWriteLock lock, boolean write) {
+        if (write) {
+            lock.writeLock().lock();
+        } else {
+            lock.readLock().lock();
+        }
+    }
+
+    private static void unlock(ReentrantReadWriteLock lock, boolean write) {
+        if (write) {
+            lock.writeLock().unlock();
+        } else {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+
+/** A list of distinct user IDs that is never changed in place. Every change builds a new immutable
+ *  version of the list and publishes it with a compare-and-set, so readers never lock or wait:
+ *  each read looks at one version, and needs no more than a single atomic read to find it.
+ *  Each version keeps the IDs both in list order and sorted, so membership checks are binary searches
+ *  and counting common IDs is a merge. Changes cost O(size), which suits lists that are read far more
+ *  often than they are changed. Removal has the same swap-with-last behavior as Adjacency.
+ *  Callers that need several IDs from the same version should use forEach, toArray or sortedIds. */
+class CopyOnWriteAdjacency extends Adjacency {
+    private static final Version EMPTY_VERSION = new Version(new int[0], new int[0]);
+
+    private final AtomicReference<Version> version; // the current contents of this list
+
+    /** One immutable state of the list. */
+    private static final class Version {
+        final int[] ids;     // the IDs, in list order
+        final int[] sorted;  // the same IDs, in increasing order
+
+        Version(int[] ids, int[] sorted) {
+            this.ids = ids;
+            this.sorted = sorted;
+        }
+    }
+
+    /** Creates an empty list. */
+    CopyOnWriteAdjacency() {
+        super(0);
+        this.version = new AtomicReference<Version>(EMPTY_VERSION);
+    }
+
+    @Override
+    int size() {
+        return version.get().ids.length;
+    }
+
+    @Override
+    int capacity() {
+        return size();
+    }
+
+    @Override
+    int get(int i) {
+        return version.get().ids[i];
+    }
+
+    @Override
+    boolean contains(int id) {
+        return Arrays.binarySearch(version.get().sorted, id) >= 0;
+    }
+
+    @Override
+    boolean add(int id) {
+        while (true) {
+            Version current = version.get();
+            int position = Arrays.binarySearch(current.sorted, id);
+            if (position >= 0) {
+                return false;
+            }
+            position = -position - 1; // where id goes in the sorted array
+            int size = current.ids.length;
+            int[] ids = Arrays.copyOf(current.ids, size + 1);
+            ids[size] = id;
+            int[] sorted = new int[size + 1];
+            System.arraycopy(current.sorted, 0, sorted, 0, position);
+            sorted[position] = id;
+            System.arraycopy(current.sorted, position, sorted, position + 1, size - position);
+            if (version.compareAndSet(current, new Version(ids, sorted))) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    boolean remove(int id) {
+        while (true) {
+            Version current = version.get();
+            int position = Arrays.binarySearch(current.sorted, id);
+            if (position < 0) {
+                return false;
+            }
+            int size = current.ids.length;
+            int[] ids = Arrays.copyOf(current.ids, size - 1);
+            for (int i = 0; i < size - 1; i++) {
+                if (ids[i] == id) {
+                    ids[i] = current.ids[size - 1]; // Replace with the last ID
+                    break;
+                }
+            }
+            int[] sorted = new int[size - 1];
+            System.arraycopy(current.sorted, 0, sorted, 0, position);
+            System.arraycopy(current.sorted, position + 1, sorted, position, size - 1 - position);
+            if (version.compareAndSet(current, new Version(ids, sorted))) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    void clear() {
+        version.set(EMPTY_VERSION);
+    }
+
+    /** Publishes a renumbered version. Since newIds keeps the order of the IDs, the sorted IDs stay sorted. */
+    @Override
+    void remap(int[] newIds) {
+        while (true) {
+            Version current = version.get();
+            Version remapped = new Version(remap(current.ids, newIds), remap(current.sorted, newIds));
+            if (version.compareAndSet(current, remapped)) {
+                return;
+            }
+        }
+    }
+
+    private static int[] remap(int[] ids, int[] newIds) {
+        int[] result = new int[ids.length];
+        int kept = 0;
+        for (int id : ids) {
+            if (newIds[id] >= 0) {
+                result[kept++] = newIds[id];
+            }
+        }
+        return (kept == ids.length) ? result : Arrays.copyOf(result, kept);
+    }
+
+    /** Does nothing: every version has exactly the room it needs. */
+    @Override
+    void ensureCapacity(int capacity) {
+    }
+
+    /** Does nothing: every version has exactly the room it needs. */
+    @Override
+    void trimToSize() {
+    }
+
+    @Override
+    void copyTo(int[] dest, int start) {
+        int[] ids = version.get().ids;
+        System.arraycopy(ids, 0, dest, start, ids.length);
+    }
+
+    @Override
+    void forEach(IntConsumer action) {
+        for (int id : version.get().ids) {
+            action.accept(id);
+        }
+    }
+
+    /** Returns the current version of the list itself, which is never changed. */
+    @Override
+    int[] toArray() {
+        return version.get().ids;
+    }
+
+    @Override
+    int[] sortedIds() {
+        return version.get().sorted;
+    }
+
+    /** Merges the sorted IDs of the two lists, or probes the other list if this list is much shorter. */
+    @Override
+    int countCommon(Adjacency other) {
+        int[] a = sortedIds();
+        if ((long) a.length * probeRatio <= other.size()) {
+            int count = 0;
+            for (int id : a) {
+                if (other.contains(id)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+        return countCommonSorted(a, other.sortedIds());
+    }
+}
@@ -0,0 +1,219 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/** Generates random social networks, for load and scale testing.
+ *  The users are named user0, user1, ..., and each user follows meanDegree users on average.
+ *  Three models are supported:
+ *  ERDOS_RENYI: every user follows every other user independently, with the same probability.
+ *  BARABASI_ALBERT: users join one by one, and each one follows meanDegree users that joined before it,
+ *  chosen with probability proportional to their number of followers plus 1 (preferential attachment),
+ *  which gives a power-law distribution of followers.
+ *  COMMUNITY: users are split into equal communities of consecutive IDs. Each user follows meanDegree users,
+ *  each of them from its own community with probability insideProbability, and from the whole network otherwise.
+ *  The same settings and seed always generate the same network. No user follows itself or follows
+ *  the same user twice. */
+public class GraphGenerator {
+    /** The random graph models that can be generated. */
+    public enum Model { ERDOS_RENYI, BARABASI_ALBERT, COMMUNITY }
+
+    private final Model model;
+    private final int userCount;
+    private final int meanDegree;
+    private final long seed;
+    private int communityCount;       // number of communities of the COMMUNITY model
+    private double insideProbability; // probability that a followee of the COMMUNITY model is in the same community
+
+    /** Receives the follow relationships of a generated network, one at a time. */
+    private interface EdgeSink {
+        void edge(int follower, int followee);
+    }
+
+    /** A growable array of follow relationships, stored as pairs of user IDs. */
+    private static class EdgeList implements EdgeSink {
+        private int[] ids = new int[1024];
+        private int size; // number of IDs in ids; twice the number of relationships
+
+        public void edge(int follower, int followee) {
+            if (size == ids.length) {
+                int[] grown = new int[ids.length * 2];
+                System.arraycopy(ids, 0, grown, 0, size);
+                ids = grown;
+            }
+            ids[size++] = follower;
+            ids[size++] = followee;
+        }
+
+        int[] toArray() {
+            int[] result = new int[size];
+            System.arraycopy(ids, 0, result, 0, size);
+            return result;
+        }
+    }
+
+    /** Creates a generator of networks of the given model, size and mean number of followees per user.
+     *  The COMMUNITY model starts with 10 communities, and 90% of the followees inside the community. */
+    public GraphGenerator(Model model, int userCount, int meanDegree, long seed) {
+        this.model = model;
+        this.userCount = userCount;
+        this.meanDegree = Math.max(0, Math.min(meanDegree, userCount - 1));
+        this.seed = seed;
+        this.communityCount = 10;
+        this.insideProbability = 0.9;
+    }
+
+    /** Sets the number of communities, and the probability that a followee is in the follower's community,
+     *  for the COMMUNITY model. */
+    public void setCommunities(int communityCount, double insideProbability) {
+        this.communityCount = Math.max(1, Math.min(communityCount, userCount));
+        this.insideProbability = insideProbability;
+    }
+
+    /** Returns the name of the user with the given ID. */
+    public static String nameOf(int id) {
+        return "user" + id;
+    }
+
+    /** Returns a new network with the generated users and follow relationships. */
+    public Network generate() {
+        Network network = new Network(userCount);
+        populate(network);
+        return network;
+    }
+
+    /** Adds the generated users to the given network, and then the generated follow relationships.
+     *  Users that the network already has are kept, and get the generated followees in addition to their own.
+     *  No other thread may use the network meanwhile. */
+    public void populate(Network network) {
+        User[] users = new User[userCount];
+        for (int id = 0; id < userCount; id++) {
+            network.addUser(nameOf(id));
+            users[id] = network.getUser(nameOf(id));
+        }
+        generate((follower, followee) -> {
+            if (users[follower] != null && users[followee] != null) {
+                users[follower].addFolloweeId(users[followee].getId());
+            }
+        });
+    }
+
+    /** Returns the generated follow relationships, as pairs of user IDs:
+     *  the user edges[2 * i] follows the user edges[2 * i + 1]. */
+    public int[] edges() {
+        EdgeList edges = new EdgeList();
+        generate(edges);
+        return edges.toArray();
+    }
+
+    /** Writes the generated follow relationships to the given file, one "follower followee" line each,
+     *  so that it can be read with In or NetworkLoader. Users who neither follow nor are followed
+     *  do not appear in the file. */
+    public void writeEdgeList(String fileName) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName), 1 << 16)) {
+            IOException[] failure = { null };
+            generate((follower, followee) -> {
+                if (failure[0] == null) {
+                    try {
+                        writer.write(nameOf(follower));
+                        writer.write(' ');
+                        writer.write(nameOf(followee));
+                        writer.newLine();
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+    }
+
+    /** Generates the follow relationships of the network, and gives them to sink in a fixed order. */
+    private void generate(EdgeSink sink) {
+        Random random = new Random(seed);
+        if (model == Model.ERDOS_RENYI) {
+            generateErdosRenyi(random, sink);
+        } else if (model == Model.BARABASI_ALBERT) {
+            generateBarabasiAlbert(random, sink);
+        } else {
+            generateCommunities(random, sink);
+        }
+    }
+
+    /** Each of the n * (n - 1) possible follow relationships exists with probability p = meanDegree / (n - 1).
+     *  Instead of drawing a coin for each of them, the gaps between the relationships that exist are drawn,
+     *  from the geometric distribution, so the time is proportional to the number of relationships. */
+    private void generateErdosRenyi(Random random, EdgeSink sink) {
+        if (meanDegree == 0) return;
+        double p = meanDegree / (double) (userCount - 1);
+        double logOfMiss = Math.log(1 - p);
+        for (int follower = 0; follower < userCount; follower++) {
+            long candidate = -1; // index among the n - 1 other users
+            while (true) {
+                candidate += 1 + ((p == 1) ? 0 : (long) (Math.log(1 - random.nextDouble()) / logOfMiss));
+                if (candidate >= userCount - 1) {
+                    break;
+                }
+                int followee = (int) candidate;
+                sink.edge(follower, (followee < follower) ? followee : followee + 1); // Skips the follower itself
+            }
+        }
+    }
+
+    /** Users join in ID order. The list "chances" holds each user once, plus once more for each follower
+     *  it has, so a uniform draw from the list chooses users in proportion to their followers plus 1.
+     *  Users that join while fewer than meanDegree users exist follow all of them. */
+    private void generateBarabasiAlbert(Random random, EdgeSink sink) {
+        int[] chances = new int[(int) Math.min(Integer.MAX_VALUE - 8, userCount * (1L + meanDegree))];
+        int chanceCount = 0;
+        int[] chosen = new int[meanDegree];
+        for (int user = 0; user < userCount; user++) {
+            int followeeCount = Math.min(meanDegree, user);
+            for (int i = 0; i < followeeCount; i++) {
+                int followee;
+                do {
+                    followee = (user <= meanDegree) ? i : chances[random.nextInt(chanceCount)];
+                } while (contains(chosen, i, followee));
+                chosen[i] = followee;
+                sink.edge(user, followee);
+            }
+            for (int i = 0; i < followeeCount; i++) {
+                chances[chanceCount++] = chosen[i];
+            }
+            chances[chanceCount++] = user;
+        }
+    }
+
+    /** Communities are ranges of consecutive IDs of (almost) equal sizes: user u is in community
+     *  u * communityCount / userCount, and community c starts at the first user for which that is c. */
+    private void generateCommunities(Random random, EdgeSink sink) {
+        int[] chosen = new int[meanDegree];
+        for (int user = 0; user < userCount; user++) {
+            int community = (int) ((long) user * communityCount / userCount);
+            int start = (int) (((long) community * userCount + communityCount - 1) / communityCount);
+            int end = (int) (((long) (community + 1) * userCount + communityCount - 1) / communityCount);
+            int size = end - start;
+            for (int i = 0; i < meanDegree; i++) {
+                int followee;
+                do {
+                    boolean inside = size > meanDegree && random.nextDouble() < insideProbability;
+                    followee = inside ? start + random.nextInt(size) : random.nextInt(userCount);
+                } while (followee == user || contains(chosen, i, followee));
+                chosen[i] = followee;
+                sink.edge(user, followee);
+            }
+        }
+    }
+
+    /** Checks if one of the first count entries of the given array is the given value. */
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,97 @@
+import java.util.Arrays;
+
+/** A set of non-negative ints, stored in an open-addressing hash table with linear probing. */
+class IntHashSet {
+    private static final int FREE = -1; // marks an empty slot
+
+    private int[] slots;  // the table; its length is always a power of 2
+    private int size;     // number of ints in this set
+
+    /** Creates an empty set that can hold the given number of ints without resizing. */
+    IntHashSet(int expectedSize) {
+        int length = 8;
+        while (length < expectedSize * 2) {
+            length *= 2;
+        }
+        this.slots = new int[length];
+        Arrays.fill(slots, FREE);
+        this.size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(int value) {
+        int mask = slots.length - 1;
+        for (int i = slot(value, mask); slots[i] != FREE; i = (i + 1) & mask) {
+            if (slots[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Adds the given value. Returns false if it was already in this set. */
+    boolean add(int value) {
+        if ((size + 1) * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        int mask = slots.length - 1;
+        int i = slot(value, mask);
+        while (slots[i] != FREE) {
+            if (slots[i] == value) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        slots[i] = value;
+        size++;
+        return true;
+    }
+
+    /** Removes the given value. Returns false if it was not in this set. */
+    boolean remove(int value) {
+        int mask = slots.length - 1;
+        int i = slot(value, mask);
+        while (slots[i] != value) {
+            if (slots[i] == FREE) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        // Shifts back the following entries of the probe sequence, so that no lookup stops too early
+        int hole = i;
+        for (int j = (i + 1) & mask; slots[j] != FREE; j = (j + 1) & mask) {
+            int home = slot(slots[j], mask);
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                slots[hole] = slots[j];
+                hole = j;
+            }
+        }
+        slots[hole] = FREE;
+        size--;
+        return true;
+    }
+
+    private void rehash(int length) {
+        int[] old = slots;
+        slots = new int[length];
+        Arrays.fill(slots, FREE);
+        int mask = length - 1;
+        for (int value : old) {
+            if (value != FREE) {
+                int i = slot(value, mask);
+                while (slots[i] != FREE) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = value;
+            }
+        }
+    }
+
+    private static int slot(int value, int mask) {
+        int h = value * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
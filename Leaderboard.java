@@ -0,0 +1,130 @@
+import java.util.Arrays;
+
+/** The follower counts of all the users of a network, kept in an indexed max-heap,
+ *  so the most popular user is always at the top. The heap orders users by their number of followers,
+ *  and users with the same number by ID, lowest first, which is the order in which they were added.
+ *  position[id] tells where each user is in the heap, so a user whose count changes by 1 is moved
+ *  to its new place in O(log n), and finding the most popular user takes O(1).
+ *  Not safe for use by several threads. */
+class Leaderboard {
+    private int[] heap;     // user IDs; heap[0] is the most popular user, and heap[i] ranks above heap[2i+1], heap[2i+2]
+    private int[] position; // position[id] is the index of the user with that ID in heap, or -1 if it is not in the heap
+    private int[] counts;   // counts[id] is the number of followers of the user with that ID
+    private int size;       // number of users in the heap
+
+    /** Creates an empty leaderboard with room for user IDs 0 ... capacity - 1. */
+    Leaderboard(int capacity) {
+        this.heap = new int[capacity];
+        this.position = new int[capacity];
+        this.counts = new int[capacity];
+        this.size = 0;
+    }
+
+    /** Adds a user with no followers. Its ID must be higher than the IDs of all the users in the heap. */
+    void add(int id) {
+        if (id >= position.length) {
+            int length = Math.max(id + 1, position.length * 2);
+            heap = Arrays.copyOf(heap, length);
+            position = Arrays.copyOf(position, length);
+            counts = Arrays.copyOf(counts, length);
+        }
+        counts[id] = 0;
+        heap[size] = id;
+        position[id] = size++;
+        // With no followers and the highest ID, the user ranks below every other user: it stays at the bottom
+    }
+
+    /** Removes the user with the given ID. */
+    void remove(int id) {
+        int i = position[id];
+        position[id] = -1;
+        int last = heap[--size];
+        if (last != id) {
+            heap[i] = last;
+            position[last] = i;
+            siftDown(i);
+            siftUp(position[last]);
+        }
+    }
+
+    /** Records that the user with the given ID got a new follower. */
+    void increment(int id) {
+        counts[id]++;
+        siftUp(position[id]);
+    }
+
+    /** Records that the user with the given ID lost a follower. */
+    void decrement(int id) {
+        counts[id]--;
+        siftDown(position[id]);
+    }
+
+    /** Returns the ID of the user with the most followers, and with the lowest ID among those,
+     *  or -1 if no user has followers. */
+    int top() {
+        return (size > 0 && counts[heap[0]] > 0) ? heap[0] : -1;
+    }
+
+    /** Renumbers the users: the user with ID id gets the ID newIds[id], or is dropped if newIds[id] is -1.
+     *  The kept users must get the IDs 0 ... newSize - 1, in their current order. Rebuilds the heap in O(n). */
+    void renumber(int[] newIds, int newSize) {
+        int[] newCounts = new int[Math.max(newSize, 1)];
+        for (int id = 0; id < newIds.length; id++) {
+            if (newIds[id] >= 0) {
+                newCounts[newIds[id]] = counts[id];
+            }
+        }
+        counts = newCounts;
+        heap = new int[counts.length];
+        position = new int[counts.length];
+        size = newSize;
+        for (int id = 0; id < size; id++) {
+            heap[id] = id;
+            position[id] = id;
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    /** Checks if the user with ID a ranks above the user with ID b. */
+    private boolean ranksAbove(int a, int b) {
+        return counts[a] > counts[b] || (counts[a] == counts[b] && a < b);
+    }
+
+    private void siftUp(int i) {
+        int id = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!ranksAbove(id, heap[parent])) {
+                break;
+            }
+            heap[i] = heap[parent];
+            position[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = id;
+        position[id] = i;
+    }
+
+    private void siftDown(int i) {
+        int id = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && ranksAbove(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!ranksAbove(heap[child], id)) {
+                break;
+            }
+            heap[i] = heap[child];
+            position[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = id;
+        position[id] = i;
+    }
+}
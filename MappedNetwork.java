@@ -0,0 +1,323 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/** A social network that is read directly from a snapshot file, which is mapped into memory.
+ *  Opening a file reads only its header; the rest of the file is paged in by the operating system
+ *  as queries touch it, so a large network is ready for queries as soon as it is opened.
+ *  Snapshot files are written by NetworkSnapshot.save. A file holds, after a header:
+ *  the followee IDs of all the users in compressed sparse row layout (each row sorted),
+ *  the follower IDs of all the users in the same layout, the names of the users in UTF-8,
+ *  and a hash table from the case-folded names to the user IDs.
+ *  Sections are arrays of 4-byte ints, so a file can hold up to about 2^29 follow relationships.
+ *  A MappedNetwork cannot be changed. To change it, load it into a Network with toNetwork. */
+public class MappedNetwork {
+    static final int MAGIC = 0x534E4554;  // "SNET"
+    static final int VERSION = 1;
+    static final int HEADER_INTS = 6;     // magic, version, user count, edge count, hash table size, name bytes
+
+    private final int userCount;
+    private final int edgeCount;
+    private final IntBuffer offsets;      // row i of targets starts at offsets.get(i); has one extra entry at the end
+    private final IntBuffer targets;      // the followee IDs of all the users, row after row
+    private final IntBuffer inOffsets;    // row i of sources starts at inOffsets.get(i); has one extra entry at the end
+    private final IntBuffer sources;      // the follower IDs of all the users, row after row
+    private final IntBuffer nameOffsets;  // the name of user i is nameBytes[nameOffsets.get(i) ... nameOffsets.get(i + 1) - 1]
+    private final IntBuffer slots;        // open-addressing hash table of user IDs, keyed by folded name; -1 is empty
+    private final ByteBuffer nameBytes;   // the names of all the users, in UTF-8
+    private final ThreadLocal<MutualCounter> counters;
+
+    /** Opens the given snapshot file. Throws an IOException if the file cannot be read,
+     *  or is not a complete snapshot file. */
+    public MappedNetwork(String fileName) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(fileName + " is too large to be a snapshot file");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // Stays valid after closing
+        }
+        if (buffer.capacity() < HEADER_INTS * 4 || buffer.getInt(0) != MAGIC) {
+            throw new IOException(fileName + " is not a snapshot file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException(fileName + " has unsupported snapshot version " + buffer.getInt(4));
+        }
+        this.userCount = buffer.getInt(8);
+        this.edgeCount = buffer.getInt(12);
+        int slotCount = buffer.getInt(16);
+        int nameByteCount = buffer.getInt(20);
+        long length = fileLength(userCount, edgeCount, slotCount, nameByteCount);
+        if (userCount < 0 || edgeCount < 0 || slotCount <= userCount || nameByteCount < 0 || length != buffer.capacity()) {
+            throw new IOException(fileName + " is not a complete snapshot file");
+        }
+        int position = HEADER_INTS * 4;
+        this.offsets = ints(buffer, position, userCount + 1);
+        position += (userCount + 1) * 4;
+        this.targets = ints(buffer, position, edgeCount);
+        position += edgeCount * 4;
+        this.inOffsets = ints(buffer, position, userCount + 1);
+        position += (userCount + 1) * 4;
+        this.sources = ints(buffer, position, edgeCount);
+        position += edgeCount * 4;
+        this.nameOffsets = ints(buffer, position, userCount + 1);
+        position += (userCount + 1) * 4;
+        this.slots = ints(buffer, position, slotCount);
+        position += slotCount * 4;
+        this.nameBytes = buffer.duplicate().position(position).limit(position + nameByteCount).slice();
+        this.counters = new ThreadLocal<MutualCounter>();
+    }
+
+    public int getUserCount() {
+        return userCount;
+    }
+
+    /** Returns the total number of follow relationships in this network. */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /** Returns true if this network has a user with the given name. */
+    public boolean hasUser(String name) {
+        return idOf(name) >= 0;
+    }
+
+    /** Returns a user with the given name, and with the followees that this user has in this network,
+     *  or null if there is no such user. The returned user is a copy, outside of any network:
+     *  changing it does not change this network. */
+    public User getUser(String name) {
+        int id = idOf(name);
+        if (id < 0) return null;
+        int start = offsets.get(id);
+        int end = offsets.get(id + 1);
+        // Like a user created outside a network, the copy can follow up to maxfCount users, or all of its followees
+        User user = new User(nameOf(id), -1, null, new NameTable(end - start), Math.max(end - start, User.maxfCount));
+        for (int i = start; i < end; i++) {
+            user.addFollowee(nameOf(targets.get(i)));
+        }
+        return user;
+    }
+
+    /** Checks if the user with name1 follows the user with name2. */
+    public boolean follows(String name1, String name2) {
+        int id1 = idOf(name1);
+        int id2 = idOf(name2);
+        return id1 >= 0 && id2 >= 0 && followsId(id1, id2);
+    }
+
+    /** Returns the number of users that follow the user with the given name,
+     *  or 0 if there is no such user. */
+    public int followeeCount(String name) {
+        int id = idOf(name);
+        return (id < 0) ? 0 : inOffsets.get(id + 1) - inOffsets.get(id);
+    }
+
+    /** Recommends another user to follow, exactly like Network.recommendWhoToFollow.
+     *  Only the users within two follow steps of the given user are looked at. */
+    public String recommendWhoToFollow(String name) {
+        int id = idOf(name);
+        if (id < 0) return null;
+
+        MutualCounter counter = counters.get();
+        if (counter == null) {
+            counter = new MutualCounter(userCount);
+            counters.set(counter);
+        }
+        // Each user that follows one of the followees of id has one more mutual followee with id
+        for (int i = offsets.get(id), end = offsets.get(id + 1); i < end; i++) {
+            int followee = targets.get(i);
+            for (int j = inOffsets.get(followee), jEnd = inOffsets.get(followee + 1); j < jEnd; j++) {
+                counter.increment(sources.get(j));
+            }
+        }
+        int recommendation = -1;
+        int maxMutual = 0;
+        for (int i = 0; i < counter.size(); i++) {
+            int candidate = counter.id(i);
+            int mutual = counter.count(candidate);
+            if (candidate != id && (mutual > maxMutual || (mutual == maxMutual && candidate < recommendation))
+                    && !followsId(id, candidate)) {
+                maxMutual = mutual;
+                recommendation = candidate;
+            }
+        }
+        counter.clear();
+        return (recommendation < 0) ? null : nameOf(recommendation);
+    }
+
+    /** Returns the name of the most popular user, exactly like Network.mostPopularUser. */
+    public String mostPopularUser() {
+        int mostPopular = -1;
+        int maxFollowers = 0;
+        for (int i = 0; i < userCount; i++) {
+            int followers = inOffsets.get(i + 1) - inOffsets.get(i);
+            if (followers > maxFollowers) {
+                maxFollowers = followers;
+                mostPopular = i;
+            }
+        }
+        return (mostPopular < 0) ? null : nameOf(mostPopular);
+    }
+
+    /** Loads this network into a new network that can hold up to maxUserCount users,
+     *  in which users can follow any number of users. The users get the same IDs as in this network,
+     *  and each user's followees are listed in increasing ID order. */
+    public Network toNetwork(int maxUserCount) {
+        Network network = new Network(Math.max(maxUserCount, userCount));
+        for (int id = 0; id < userCount; id++) {
+            network.addUser(nameOf(id));
+        }
+        for (int id = 0; id < userCount; id++) {
+            int start = offsets.get(id);
+            int end = offsets.get(id + 1);
+            User user = network.userAt(id);
+            user.getFollowees().ensureCapacity(end - start);
+            for (int i = start; i < end; i++) {
+                user.addFolloweeId(targets.get(i));
+            }
+        }
+        return network;
+    }
+
+    /** Returns the ID of the user with the given name, or -1 if there is no such user. */
+    private int idOf(String name) {
+        if (name == null) return -1;
+        int mask = slots.capacity() - 1;
+        for (int slot = slotOf(NameKey.of(name), mask); ; slot = (slot + 1) & mask) {
+            int id = slots.get(slot);
+            if (id < 0) {
+                return -1;
+            }
+            if (nameOf(id).equalsIgnoreCase(name)) {
+                return id;
+            }
+        }
+    }
+
+    private String nameOf(int id) {
+        int start = nameOffsets.get(id);
+        byte[] bytes = new byte[nameOffsets.get(id + 1) - start];
+        nameBytes.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean followsId(int id1, int id2) {
+        int low = offsets.get(id1);
+        int high = offsets.get(id1 + 1) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int value = targets.get(middle);
+            if (value < id2) {
+                low = middle + 1;
+            } else if (value > id2) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Writes a snapshot file with the given users and follow relationships, in the layout described above.
+     *  Row i of targets holds the followee IDs of user i, in increasing order. */
+    static void write(String fileName, NameTable names, int[] offsets, int[] targets) throws IOException {
+        int userCount = offsets.length - 1;
+
+        // The follower rows: scanning the followee rows in ID order fills each follower row in increasing order
+        int[] inOffsets = new int[userCount + 1];
+        for (int target : targets) {
+            inOffsets[target + 1]++;
+        }
+        for (int i = 0; i < userCount; i++) {
+            inOffsets[i + 1] += inOffsets[i];
+        }
+        int[] sources = new int[targets.length];
+        int[] next = inOffsets.clone();
+        for (int id = 0; id < userCount; id++) {
+            for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+                sources[next[targets[i]]++] = id;
+            }
+        }
+
+        // The names, and a hash table with at most half of its slots in use
+        byte[][] encoded = new byte[userCount][];
+        int[] nameOffsets = new int[userCount + 1];
+        for (int id = 0; id < userCount; id++) {
+            encoded[id] = names.nameOf(id).getBytes(StandardCharsets.UTF_8);
+            nameOffsets[id + 1] = nameOffsets[id] + encoded[id].length;
+        }
+        int[] slots = new int[Integer.highestOneBit(Math.max(userCount, 1)) * 4];
+        Arrays.fill(slots, -1);
+        for (int id = 0; id < userCount; id++) {
+            int slot = slotOf(names.keyOf(id), slots.length - 1);
+            while (slots[slot] >= 0) {
+                slot = (slot + 1) & (slots.length - 1);
+            }
+            slots[slot] = id;
+        }
+
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            writeInts(channel, buffer, new int[] {
+                MAGIC, VERSION, userCount, targets.length, slots.length, nameOffsets[userCount] });
+            writeInts(channel, buffer, offsets);
+            writeInts(channel, buffer, targets);
+            writeInts(channel, buffer, inOffsets);
+            writeInts(channel, buffer, sources);
+            writeInts(channel, buffer, nameOffsets);
+            writeInts(channel, buffer, slots);
+            for (byte[] name : encoded) {
+                if (buffer.remaining() < name.length) {
+                    flush(channel, buffer);
+                }
+                if (name.length > buffer.capacity()) {
+                    channel.write(ByteBuffer.wrap(name));
+                } else {
+                    buffer.put(name);
+                }
+            }
+            flush(channel, buffer);
+            channel.force(true);
+        }
+    }
+
+    /** Returns the number of bytes of a snapshot file with the given section sizes. */
+    private static long fileLength(int userCount, int edgeCount, int slotCount, int nameByteCount) {
+        return 4L * (HEADER_INTS + 3L * (userCount + 1) + 2L * edgeCount + slotCount) + nameByteCount;
+    }
+
+    /** Returns the home slot of the name with the given key, in a hash table of mask + 1 slots. */
+    private static int slotOf(NameKey key, int mask) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /** Returns a view of count ints of the given buffer, starting at the given byte position. */
+    private static IntBuffer ints(ByteBuffer buffer, int position, int count) {
+        return buffer.duplicate().position(position).limit(position + count * 4).slice().asIntBuffer();
+    }
+
+    private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] values) throws IOException {
+        for (int value : values) {
+            if (buffer.remaining() < 4) {
+                flush(channel, buffer);
+            }
+            buffer.putInt(value);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
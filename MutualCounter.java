@@ -0,0 +1,61 @@
+/** Scratch space for accumulating mutual-followee counts during one recommendation.
+ *  Counts are kept in an array indexed by user ID, but only the IDs that were actually
+ *  counted are remembered and reset, so one use costs time proportional to the number of
+ *  increments rather than to the number of users. Not safe for use by several threads. */
+class MutualCounter {
+    private int[] counts;   // counts[id] is the count of the user with that ID
+    private int[] touched;  // IDs with a nonzero count, in the order they were first counted
+    private int touchedCount;
+
+    /** Creates a counter for user IDs 0 ... capacity - 1. */
+    MutualCounter(int capacity) {
+        this.counts = new int[capacity];
+        this.touched = new int[16];
+        this.touchedCount = 0;
+    }
+
+    /** Returns the number of user IDs that this counter can count. */
+    int capacity() {
+        return counts.length;
+    }
+
+    /** Adds 1 to the count of the given ID. Grows the counter if the ID is beyond its capacity,
+     *  which happens when users are added to a network while a recommendation runs. */
+    void increment(int id) {
+        if (id >= counts.length) {
+            int[] grown = new int[Math.max(id + 1, counts.length * 2)];
+            System.arraycopy(counts, 0, grown, 0, counts.length);
+            counts = grown;
+        }
+        if (counts[id]++ == 0) {
+            if (touchedCount == touched.length) {
+                int[] grown = new int[touched.length * 2];
+                System.arraycopy(touched, 0, grown, 0, touchedCount);
+                touched = grown;
+            }
+            touched[touchedCount++] = id;
+        }
+    }
+
+    /** Returns the number of IDs with a nonzero count. */
+    int size() {
+        return touchedCount;
+    }
+
+    /** Returns the i'th ID with a nonzero count. */
+    int id(int i) {
+        return touched[i];
+    }
+
+    int count(int id) {
+        return counts[id];
+    }
+
+    /** Resets all the counts to 0. */
+    void clear() {
+        for (int i = 0; i < touchedCount; i++) {
+            counts[touched[i]] = 0;
+        }
+        touchedCount = 0;
+    }
+}
@@ -0,0 +1,58 @@
+/** The canonical form of a user name, under which names are compared ignoring case.
+ *  A key holds the case-folded name and its hash code, both computed once when the key is made,
+ *  so comparing keys and looking them up never folds a name again.
+ *  Two names get equal keys exactly when they are equal according to String.equalsIgnoreCase.
+ *  Keys only identify names: the display form of a name is kept separately, with its original casing. */
+final class NameKey {
+    private final String folded; // the name, with the case of each character folded
+    private final int hash;      // folded.hashCode()
+
+    private NameKey(String folded) {
+        this.folded = folded;
+        this.hash = folded.hashCode();
+    }
+
+    /** Returns the key of the given name. */
+    static NameKey of(String name) {
+        return new NameKey(fold(name));
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof NameKey)) return false;
+        NameKey key = (NameKey) other;
+        return hash == key.hash && folded.equals(key.folded);
+    }
+
+    /** Returns the case-folded name. */
+    @Override
+    public String toString() {
+        return folded;
+    }
+
+    /** Folds the case of each character of the given name, the same way that String.equalsIgnoreCase does. */
+    private static String fold(String name) {
+        int i = 0;
+        while (i < name.length() && folded(name.charAt(i))) {
+            i++;
+        }
+        if (i == name.length()) {
+            return name; // Already folded, as most names are after their first letter
+        }
+        char[] chars = name.toCharArray();
+        for (; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+
+    private static boolean folded(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c)) == c;
+    }
+}
@@ -0,0 +1,131 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/** A dictionary that gives each distinct name a dense int ID (0, 1, 2, ...).
+ *  Names are compared ignoring case, through their NameKeys, and the first spelling of a name is kept
+ *  as its canonical display form.
+ *  Lookups are safe while another thread adds names: a name can be found only after
+ *  its display form has been stored. Adding names must be done by one thread at a time. */
+class NameTable {
+    private ConcurrentHashMap<NameKey, Integer> ids; // maps the keys of the names to their IDs
+    private String[] names;               // names[id] is the display form of the name with that ID
+    private NameKey[] keys;               // keys[id] is the key of the name with that ID
+    private int size;                     // number of IDs given out, including those of removed names
+
+    /** Creates an empty table with room for the given number of names. */
+    NameTable(int capacity) {
+        this.ids = new ConcurrentHashMap<NameKey, Integer>();
+        this.names = new String[Math.max(capacity, 1)];
+        this.keys = new NameKey[names.length];
+        this.size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Returns the ID of the given name, or -1 if the name is null or not in this table. */
+    int idOf(String name) {
+        return (name == null) ? -1 : idOf(NameKey.of(name));
+    }
+
+    /** Returns the ID of the name with the given key, or -1 if it is not in this table. */
+    int idOf(NameKey key) {
+        Integer id = ids.get(key);
+        return (id == null) ? -1 : id;
+    }
+
+    /** Returns the display form of the name with the given ID. */
+    String nameOf(int id) {
+        return names[id];
+    }
+
+    /** Returns the key of the name with the given ID. */
+    NameKey keyOf(int id) {
+        return keys[id];
+    }
+
+    /** Adds the given name to this table and returns its new ID.
+     *  If the name is null or already in this table, does nothing and returns -1. */
+    int add(String name) {
+        return (name == null) ? -1 : add(NameKey.of(name), name);
+    }
+
+    /** Adds the given name, whose key is given, to this table and returns its new ID.
+     *  If the name is already in this table, does nothing and returns -1. */
+    int add(NameKey key, String name) {
+        if (ids.containsKey(key)) return -1;
+        return insert(key, name);
+    }
+
+    /** Returns the ID of the given name, adding the name to this table if needed.
+     *  Returns -1 if the name is null. */
+    int intern(String name) {
+        if (name == null) return -1;
+        NameKey key = NameKey.of(name);
+        Integer id = ids.get(key);
+        return (id != null) ? id : insert(key, name);
+    }
+
+    private int insert(NameKey key, String name) {
+        if (size == names.length) {
+            String[] grown = new String[size * 2];
+            System.arraycopy(names, 0, grown, 0, size);
+            names = grown;
+            NameKey[] grownKeys = new NameKey[size * 2];
+            System.arraycopy(keys, 0, grownKeys, 0, size);
+            keys = grownKeys;
+        }
+        names[size] = name;
+        keys[size] = key;
+        ids.put(key, size); // Publishes the name, after its display form is in place
+        return size++;
+    }
+
+    /** Removes the name with the given ID from this table. The ID is not given to another name,
+     *  until the table is compacted. Returns false if the name was already removed. */
+    boolean remove(int id) {
+        return ids.remove(keys[id], id);
+    }
+
+    /** Renumbers the names of this table: the name with ID id gets the ID newIds[id], or is dropped
+     *  if newIds[id] is -1. The kept names must get the IDs 0 ... newSize - 1, in their current order. */
+    void compact(int[] newIds, int newSize) {
+        for (int id = 0; id < size; id++) {
+            if (newIds[id] >= 0) {
+                names[newIds[id]] = names[id];
+                keys[newIds[id]] = keys[id];
+            }
+        }
+        for (int id = newSize; id < size; id++) {
+            names[id] = null;
+            keys[id] = null;
+        }
+        size = newSize;
+        ids.clear();
+        for (int id = 0; id < size; id++) {
+            ids.put(keys[id], id);
+        }
+    }
+
+    /** Shrinks the arrays of display forms and keys to the number of IDs given out. */
+    void trimToSize() {
+        if (size < names.length) {
+            int length = Math.max(size, 1);
+            String[] trimmed = new String[length];
+            System.arraycopy(names, 0, trimmed, 0, size);
+            names = trimmed;
+            NameKey[] trimmedKeys = new NameKey[length];
+            System.arraycopy(keys, 0, trimmedKeys, 0, size);
+            keys = trimmedKeys;
+        }
+    }
+
+    /** Returns a new table with the same names and IDs as this table. */
+    NameTable copy() {
+        NameTable copy = new NameTable(size);
+        for (int i = 0; i < size; i++) {
+            copy.insert(keys[i], names[i]);
+        }
+        return copy;
+    }
+}
@@ -1,15 +1,70 @@
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
 /** Represents a social network. The network has users, who follow other users.
  *  Each user is an instance of the User class. */
 public class Network {
     // Fields
-    private User[] users;   // the users in this network (an array of User objects)
-    private int userCount; // actual number of users in this network
+    static final double DEFAULT_GROWTH_FACTOR = 2.0;
+    private static final int RECENT_NAMES = 1024; // names that addFollowees remembers; a power of 2
+
+    private volatile User[] users; // the users in this network (an array of User objects); replaced when it grows
+    private volatile int userCount; // actual number of users in this network, not counting removed users
+    private volatile int idCount;   // number of IDs given out; users[0 ... idCount - 1] are set, and some may be removed
+    private NameTable names; // gives each user a dense ID, which is also the user's index in users
+    private final int maxUserCount;     // maximum number of users in this network
+    private final double growthFactor;  // the users array grows to this many times its length when it is full
+    private int followeeLimit; // maximum number of users that each user in this network can follow
+    private volatile boolean trackFollowers; // whether each user keeps a list of its followers
+    private MutualCounter mutualCounter; // scratch space for recommendations; created when first needed
+    private volatile NetworkLog log; // the log that records the changes to this network, or null
+    private final Leaderboard leaderboard; // the users ordered by their numbers of followers, or null if not kept
+    private volatile RecommendationCache recommendationCache; // recent results of recommendWhoToFollow, or null
+
+    /** Creates an empty network that grows as users are added, without a maximum number of users.
+     *  Users can follow any number of users. */
+    public Network() {
+        this(16, DEFAULT_GROWTH_FACTOR, Integer.MAX_VALUE);
+    }
 
-    /** Creates a network with a given maximum number of users. */
+    /** Creates a network with a given maximum number of users. Users can follow any number of users. */
     public Network(int maxUserCount) {
-        this.users = new User[maxUserCount];
+        this(maxUserCount, Integer.MAX_VALUE);
+    }
+
+    /** Creates a network with a given maximum number of users, in which each user
+     *  can follow at most followeeLimit users. */
+    public Network(int maxUserCount, int followeeLimit) {
+        this(maxUserCount, DEFAULT_GROWTH_FACTOR, maxUserCount, followeeLimit);
+    }
+
+    /** Creates a network with room for initialCapacity users, that grows by growthFactor whenever it is full,
+     *  up to maxUserCount users. Users can follow any number of users. */
+    public Network(int initialCapacity, double growthFactor, int maxUserCount) {
+        this(initialCapacity, growthFactor, maxUserCount, Integer.MAX_VALUE);
+    }
+
+    Network(int initialCapacity, double growthFactor, int maxUserCount, int followeeLimit) {
+        if (initialCapacity < 0 || maxUserCount < 0 || !(growthFactor > 1)) {
+            throw new IllegalArgumentException("Illegal capacity " + initialCapacity + ", growth factor "
+                    + growthFactor + " or maximum number of users " + maxUserCount);
+        }
+        this.users = new User[Math.min(initialCapacity, maxUserCount)];
         this.userCount = 0;
+        this.idCount = 0;
+        this.names = new NameTable(users.length);
+        this.maxUserCount = maxUserCount;
+        this.growthFactor = growthFactor;
+        this.followeeLimit = followeeLimit;
+        this.leaderboard = newLeaderboard(Math.min(users.length, 16)); // Grows as users are added
+    }
+
+    /** Returns a new, empty leaderboard for this network, or null if this network does not keep one.
+     *  Called by the constructor. */
+    Leaderboard newLeaderboard(int capacity) {
+        return new Leaderboard(capacity);
     }
 
     /** Creates a network with some users. The only purpose of this constructor is 
@@ -27,17 +82,99 @@ public class Network {
         return this.userCount;
     }
 
+    /** Returns the maximum number of users in this network. */
+    public int getMaxUserCount() {
+        return this.maxUserCount;
+    }
+
+    /** Returns the number of users that this network can hold before it has to grow. */
+    int capacity() {
+        return this.users.length;
+    }
+
+    public int getFolloweeLimit() {
+        return this.followeeLimit;
+    }
+
+    /** Starts or stops keeping, for each user, the list of users that follow it.
+     *  The number of followers of each user is always kept.
+     *  While the lists are kept, recommendWhoToFollow only looks at the users within two
+     *  follow steps of the given user, instead of at all the users in this network. */
+    public void setTrackFollowers(boolean trackFollowers) {
+        if (trackFollowers == this.trackFollowers) return;
+        if (!trackFollowers) {
+            this.trackFollowers = false; // Stops recommendations from using the lists before they are dropped
+        }
+        for (int i = 0; i < idCount; i++) {
+            users[i].setTrackFollowers(trackFollowers);
+        }
+        if (trackFollowers) {
+            for (int i = 0; i < idCount; i++) {
+                final int followerId = i;
+                users[i].getFollowees().forEach(followeeId -> users[followeeId].getFollowers().add(followerId));
+            }
+            this.trackFollowers = true; // The lists are complete; recommendations can use them
+        }
+    }
+
+    public boolean isTrackingFollowers() {
+        return this.trackFollowers;
+    }
+
+    /** Sets the maximum number of users that each user in this network can follow.
+     *  Users who already follow more users keep their followees, but cannot add new ones. */
+    public void setFolloweeLimit(int followeeLimit) {
+        this.followeeLimit = followeeLimit;
+        for (int i = 0; i < idCount; i++) {
+            users[i].setMaxFollowees(followeeLimit);
+        }
+    }
+
+    /** Starts recording every user that is added to or removed from this network, and every follow relationship
+     *  that is added or removed, in the given log. null stops the recording. */
+    public void setLog(NetworkLog log) {
+        this.log = log;
+    }
+
+    /** Starts keeping the results of recommendWhoToFollow for up to maxEntries users, dropping the least
+     *  recently used ones when it is full. 0 stops keeping them. The counters of the previous cache are reset.
+     *  A kept result is dropped when it may have changed: when a user starts or stops following another user,
+     *  the results of the follower and of the other followers of the followee are dropped, and when a user
+     *  is removed or the network is compacted, all the results are dropped. Works whether or not
+     *  follower lists are kept. */
+    public void setRecommendationCacheSize(int maxEntries) {
+        this.recommendationCache = (maxEntries > 0) ? new RecommendationCache(maxEntries) : null;
+    }
+
+    /** Returns the number of calls to recommendWhoToFollow that were answered from the cache. */
+    public long getRecommendationCacheHits() {
+        RecommendationCache cache = this.recommendationCache;
+        return (cache == null) ? 0 : cache.getHits();
+    }
+
+    /** Returns the number of calls to recommendWhoToFollow that were not answered from the cache. */
+    public long getRecommendationCacheMisses() {
+        RecommendationCache cache = this.recommendationCache;
+        return (cache == null) ? 0 : cache.getMisses();
+    }
+
+    /** Returns the number of results that were dropped from the cache to make room for others. */
+    public long getRecommendationCacheEvictions() {
+        RecommendationCache cache = this.recommendationCache;
+        return (cache == null) ? 0 : cache.getEvictions();
+    }
+
     /** Finds in this network, and returns, the user that has the given name.
      *  If there is no such user, returns null.
      *  Notice that the method receives a String, and returns a User object. */
     public User getUser(String name) {
-        if (name == null) return null;
-        for (int i = 0; i < userCount; i++) {
-            if (users[i].getName().equalsIgnoreCase(name)) {
-                return users[i];
-            }
-        }
-        return null;
+        int id = names.idOf(name);
+        return (id < 0) ? null : users[id];
+    }
+
+    /** Returns the user with the given ID. */
+    User userAt(int id) {
+        return users[id];
     }
 
     /** Adds a new user with the given name to this network.
@@ -45,23 +182,274 @@ public class Network {
     *  If the given name is already a user in this network, does nothing and returns false;
     *  Otherwise, creates a new user with the given name, adds the user to this network, and returns true. */
     public boolean addUser(String name) {
-        if (name == null || getUser(name) != null || userCount >= users.length) {
+        if (name == null || userCount >= maxUserCount) {
+            return false;
+        }
+        NameKey key = NameKey.of(name); // Folded once, for both the check and the insertion
+        if (names.idOf(key) >= 0) {
             return false;
         }
-        users[userCount++] = new User(name);
+        // Logged before the user can be seen, so that the record comes before any record about the new user
+        NetworkLog log = this.log;
+        if (log != null) {
+            log.userAdded(name);
+        }
+        if (idCount == users.length) {
+            if (userCount < idCount && compactsAutomatically()) {
+                compact(); // Reclaims the IDs of removed users
+            } else {
+                grow();
+            }
+        }
+        int id = idCount; // The name table has given out exactly the IDs of this network
+        users[id] = new User(name, id, this, names, followeeLimit);
+        users[id].setTrackFollowers(trackFollowers);
+        if (leaderboard != null) {
+            leaderboard.add(id);
+        }
+        userCount++;
+        idCount++;
+        names.add(key, name); // Makes the new user visible to getUser
         return true;
     }
 
+    /** Replaces the users array with one that is growthFactor times longer, but not longer than maxUserCount.
+     *  The new array is in place before any user is stored in it, so readers always find the users. */
+    private void grow() {
+        long length = Math.max(users.length + 1L, (long) (users.length * growthFactor));
+        // The IDs of removed users are taken until the next compaction, so a network that does not compact
+        // itself may need more IDs than its maximum number of users
+        long limit = (userCount < idCount) ? Integer.MAX_VALUE - 8 : maxUserCount;
+        users = Arrays.copyOf(users, (int) Math.min(length, limit));
+    }
+
     /** Makes the user with name1 follow the user with name2. If successful, returns true.
      *  If any of the two names is not a user in this network,
      *  or if the "follows" addition failed for some reason, returns false. */
     public boolean addFollowee(String name1, String name2) {
         User user1 = getUser(name1);
         User user2 = getUser(name2);
-        if (user1 == null || user2 == null || name1.equalsIgnoreCase(name2)) {
+        if (user1 == null || user2 == null || user1 == user2) {
+            return false;
+        }
+        return user1.addFolloweeId(user2.getId());
+    }
+
+    /** Makes the user with name1 stop following the user with name2. If successful, returns true.
+     *  If any of the two names is not a user in this network,
+     *  or if the user with name1 does not follow the user with name2, returns false. */
+    public boolean removeFollowee(String name1, String name2) {
+        User user1 = getUser(name1);
+        User user2 = getUser(name2);
+        if (user1 == null || user2 == null) {
             return false;
         }
-        return user1.addFollowee(name2);
+        return user1.removeFolloweeId(user2.getId());
+    }
+
+    /** Adds all the given follow relationships: the user named pairs[i][0] starts following the user named
+     *  pairs[i][1]. Returns an array whose i'th entry is what addFollowee(pairs[i][0], pairs[i][1]) would return
+     *  if the pairs were added one by one, in order. Faster than adding them one by one when names repeat:
+     *  a name that appeared recently in the batch is not looked up again, and the pairs are grouped by follower,
+     *  so each follower's followee list grows at most once. Within a group the pairs keep their order,
+     *  and a pair's result depends only on earlier pairs of the same follower, so the results are the same.
+     *  A null pair, a pair with fewer than two names, and a null name give false, as for a missing user. */
+    public boolean[] addFollowees(String[][] pairs) {
+        boolean[] added = new boolean[pairs.length];
+        User[] followers = new User[pairs.length];
+        int[] followeeIds = new int[pairs.length];
+        long[] order = new long[pairs.length]; // for each valid pair: the follower's ID, then the pair's index
+        int count = 0;
+        String[] recentNames = new String[RECENT_NAMES];
+        User[] recentUsers = new User[RECENT_NAMES];
+        for (int i = 0; i < pairs.length; i++) {
+            if (pairs[i] == null || pairs[i].length < 2) continue;
+            User follower = resolve(pairs[i][0], recentNames, recentUsers);
+            User followee = resolve(pairs[i][1], recentNames, recentUsers);
+            if (follower != null && followee != null && follower != followee) {
+                followers[i] = follower;
+                followeeIds[i] = followee.getId();
+                order[count++] = ((long) follower.getId() << 32) | i;
+            }
+        }
+        Arrays.sort(order, 0, count);
+        int start = 0;
+        while (start < count) {
+            int followerId = (int) (order[start] >>> 32);
+            int end = start + 1;
+            while (end < count && (int) (order[end] >>> 32) == followerId) {
+                end++;
+            }
+            User user = followers[(int) order[start]];
+            user.ensureFolloweeCapacity(end - start);
+            for (int j = start; j < end; j++) {
+                int i = (int) order[j];
+                added[i] = user.addFolloweeId(followeeIds[i]);
+            }
+            start = end;
+        }
+        return added;
+    }
+
+    /** Returns the user with the given name, or null, looking in the given recently resolved names first. */
+    private User resolve(String name, String[] recentNames, User[] recentUsers) {
+        if (name == null) return null;
+        int slot = name.hashCode() & (recentNames.length - 1);
+        if (name.equals(recentNames[slot])) {
+            return recentUsers[slot];
+        }
+        User user = getUser(name);
+        recentNames[slot] = name;
+        recentUsers[slot] = user;
+        return user;
+    }
+
+    /** Removes the user with the given name from this network, together with all the follow relationships
+     *  of that user, in both directions. Returns false if there is no such user.
+     *  The ID of the removed user is left as a tombstone, and is reclaimed by the next compaction,
+     *  which happens when more than half of the IDs are tombstones, or when a user is added
+     *  and all the IDs are taken. */
+    public boolean removeUser(String name) {
+        User user = getUser(name);
+        if (user == null) return false;
+        // Logged before the change, so that a failed write leaves the network as the log has it
+        NetworkLog log = this.log;
+        if (log != null) {
+            log.userRemoved(user.getName());
+        }
+
+        int id = user.getId();
+        Adjacency followees = user.getFollowees();
+        followees.forEach(followeeId -> {
+            users[followeeId].followerRemoved(id);
+            if (leaderboard != null) {
+                leaderboard.decrement(followeeId);
+            }
+        });
+        followees.clear();
+        // The users that follow the removed user: found with the follower lists if they are kept,
+        // and otherwise by checking every user
+        Adjacency followers = user.getFollowers();
+        if (followers != null) {
+            followers.forEach(followerId -> users[followerId].getFollowees().remove(id));
+        } else {
+            for (int i = 0; i < idCount; i++) {
+                users[i].getFollowees().remove(id);
+            }
+        }
+        user.markRemoved();
+        RecommendationCache cache = this.recommendationCache;
+        if (cache != null) {
+            cache.invalidateAll(); // The removed user may have been recommended to anyone
+        }
+        if (leaderboard != null) {
+            leaderboard.remove(id);
+        }
+        names.remove(id);
+        userCount--;
+        if ((idCount - userCount) * 2 > idCount && compactsAutomatically()) {
+            compact();
+        }
+        return true;
+    }
+
+    /** Checks if this network compacts itself when it has many removed users, or needs their IDs.
+     *  Otherwise, removed users keep their IDs until compact is called. */
+    boolean compactsAutomatically() {
+        return true;
+    }
+
+    /** Reclaims the IDs of removed users. The remaining users get the IDs 0 ... getUserCount() - 1,
+     *  in the order in which they were added, so they are stored next to each other. */
+    public void compact() {
+        if (idCount == userCount) return;
+
+        int[] newIds = newIds();
+        for (int i = 0; i < idCount; i++) {
+            User user = users[i];
+            if (newIds[i] >= 0) {
+                user.renumber(newIds[i], newIds);
+                users[newIds[i]] = user; // Never above i, so no user is overwritten before it is moved
+            }
+        }
+        Arrays.fill(users, userCount, idCount, null);
+        names.compact(newIds, userCount);
+        RecommendationCache cache = this.recommendationCache;
+        if (cache != null) {
+            cache.invalidateAll(); // The cache finds its entries by followee ID
+        }
+        if (leaderboard != null) {
+            leaderboard.renumber(newIds, userCount);
+        }
+        idCount = userCount;
+    }
+
+    /** Returns the ID that each ID of this network gets when it is compacted, or -1 for removed users. */
+    private int[] newIds() {
+        int[] newIds = new int[idCount];
+        int next = 0;
+        for (int i = 0; i < idCount; i++) {
+            newIds[i] = users[i].isRemoved() ? -1 : next++;
+        }
+        return newIds;
+    }
+
+    /** Returns a new, empty list for the followees or followers of a user of this network. */
+    Adjacency newAdjacency() {
+        return new Adjacency(0);
+    }
+
+    /** Checks if the changes to this network are recorded in a log. */
+    boolean isLogged() {
+        return log != null;
+    }
+
+    /** Records in the log, if there is one, that the given user is starting to follow the user with the given ID.
+     *  Called by User before the followee is added, so that a failed write leaves the user unchanged. */
+    void logFolloweeAdded(User follower, int followeeId) {
+        NetworkLog log = this.log;
+        if (log != null) {
+            log.followeeAdded(follower.getName(), users[followeeId].getName());
+        }
+    }
+
+    /** Records in the log, if there is one, that the given user is stopping to follow the user with the given ID.
+     *  Called by User before the followee is removed, so that a failed write leaves the user unchanged. */
+    void logFolloweeRemoved(User follower, int followeeId) {
+        NetworkLog log = this.log;
+        if (log != null) {
+            log.followeeRemoved(follower.getName(), users[followeeId].getName());
+        }
+    }
+
+    /** Updates the follower index, the leaderboard and the recommendation cache, after the given user
+     *  started following the user with the given ID. Called by User whenever a followee is added. */
+    void followeeAdded(User follower, int followeeId) {
+        users[followeeId].followerAdded(follower.getId());
+        if (leaderboard != null) {
+            leaderboard.increment(followeeId);
+        }
+        invalidateRecommendations(follower, followeeId);
+    }
+
+    /** Updates the follower index, the leaderboard and the recommendation cache, after the given user
+     *  stopped following the user with the given ID. Called by User whenever a followee is removed. */
+    void followeeRemoved(User follower, int followeeId) {
+        users[followeeId].followerRemoved(follower.getId());
+        if (leaderboard != null) {
+            leaderboard.decrement(followeeId);
+        }
+        invalidateRecommendations(follower, followeeId);
+    }
+
+    /** Drops the cached recommendations that can change when the given user starts or stops following
+     *  the user with the given ID. Only the follower's own followees changed, so only its own recommendation,
+     *  and its mutual counts with the other followers of the followee, can change. */
+    private void invalidateRecommendations(User follower, int followeeId) {
+        RecommendationCache cache = this.recommendationCache;
+        if (cache != null) {
+            cache.invalidate(follower, followeeId);
+        }
     }
 
     /** For the user with the given name, recommends another user to follow. The recommended user is
@@ -69,72 +457,248 @@ public class Network {
     public String recommendWhoToFollow(String name) {
         User user = getUser(name);
         if (user == null) return null;
+        RecommendationCache cache = this.recommendationCache;
+        if (cache == null) {
+            String[] recommendations = recommendWhoToFollow(name, 1);
+            return (recommendations.length == 0) ? null : recommendations[0];
+        }
+        String cached = cache.get(user);
+        if (cached != null) {
+            return (cached == RecommendationCache.NONE) ? null : cached;
+        }
+        long generation = cache.generation(); // Read before computing, so a change meanwhile is detected
+        String[] recommendations = recommendWhoToFollow(name, 1);
+        String recommendation = (recommendations.length == 0) ? null : recommendations[0];
+        cache.put(user, (recommendation == null) ? RecommendationCache.NONE : recommendation,
+                user.getFollowees().toArray(), generation);
+        return recommendation;
+    }
+
+    /** For the user with the given name, recommends up to k other users to follow, best first.
+     *  Users are ranked by their mutual number of followees with the given user, and among equal
+     *  users, the one who was added to this network first ranks first. Users with no mutual
+     *  followees are not recommended. If there is no user with the given name, returns an empty array. */
+    public String[] recommendWhoToFollow(String name, int k) {
+        User user = getUser(name);
+        if (user == null) return new String[0];
+
+        TopK top = new TopK(k);
+        rankCandidates(user, trackFollowers ? mutualCounter() : null, top);
+        return namesOf(top.drain());
+    }
 
-        String recommendation = null;
-        int maxMutual = 0;
+    /** Returns the scratch counter used by recommendWhoToFollow, sized for the current capacity. */
+    MutualCounter mutualCounter() {
+        if (mutualCounter == null || mutualCounter.capacity() < capacity()) {
+            mutualCounter = new MutualCounter(capacity());
+        }
+        return mutualCounter;
+    }
 
-        for (int i = 0; i < userCount; i++) {
-            User candidate = users[i];
-            if (!user.follows(candidate.getName()) && !user.getName().equalsIgnoreCase(candidate.getName())) {
+    /** Recommends a user to follow for every user in this network, using all available processors.
+     *  Returns an array whose i'th entry is what recommendWhoToFollow returns for the i'th user
+     *  that was added to this network. The network must not be changed while this method runs. */
+    public String[] recommendAll() {
+        // Builds the lazily computed parts of the followee lists up front, so the parallel part only reads them
+        int[] ids = new int[userCount];
+        int count = 0;
+        for (int i = 0; i < idCount; i++) {
+            if (!users[i].isRemoved()) {
+                users[i].getFollowees().sortedIds();
+                ids[count++] = i;
+            }
+        }
+        String[] recommendations = new String[count];
+        // One chunk per processor, each with its own counter. Chunk c takes every chunks'th user from the c'th,
+        // so the chunks get a similar mix of busy and idle users.
+        int chunks = Math.max(1, Math.min(count, Runtime.getRuntime().availableProcessors()));
+        int total = count;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            MutualCounter counter = trackFollowers ? new MutualCounter(users.length) : null;
+            for (int i = chunk; i < total; i += chunks) {
+                TopK top = new TopK(1);
+                rankCandidates(users[ids[i]], counter, top);
+                int[] best = top.drain();
+                recommendations[i] = (best.length == 0) ? null : users[best[0]].getName();
+            }
+        });
+        return recommendations;
+    }
+
+    /** Offers to top every user who has mutual followees with the given user, scored by their number.
+     *  The counter is scratch space for walking the follower lists; the caller passes null when
+     *  follower lists are not kept, having read trackFollowers once. */
+    private void rankCandidates(User user, MutualCounter counter, TopK top) {
+        if (counter != null && rankFriendsOfFriends(user, counter, top)) {
+            return;
+        }
+        int count = idCount;
+        User[] users = this.users; // Read after count, so it holds users 0 ... count - 1
+        for (int i = 0; i < count; i++) {
+            User candidate = users[i]; // Removed users have no followees, so they are never offered
+            if (candidate != user && !user.followsId(i)) {
                 int mutual = user.countMutual(candidate);
-                if (mutual > maxMutual) {
-                    maxMutual = mutual;
-                    recommendation = candidate.getName();
+                if (mutual > 0) {
+                    top.offer(i, mutual);
                 }
             }
         }
-        return recommendation;
+    }
+
+    /** Offers to top every user who has mutual followees with the given user, scored by their number.
+     *  These are exactly the other followers of the given user's followees, so their mutual counts
+     *  are accumulated by walking the follower lists of the user's followees. Returns false, and offers
+     *  nothing, if the lists were dropped during the walk because setTrackFollowers(false) was called. */
+    private boolean rankFriendsOfFriends(User user, MutualCounter counter, TopK top) {
+        boolean[] dropped = new boolean[1];
+        user.getFollowees().forEach(followeeId -> {
+            Adjacency followers = users[followeeId].getFollowers(); // Read once, since it can become null
+            if (followers == null) {
+                dropped[0] = true;
+            } else {
+                followers.forEach(counter::increment);
+            }
+        });
+        if (dropped[0]) {
+            counter.clear();
+            return false;
+        }
+        for (int i = 0; i < counter.size(); i++) {
+            int candidate = counter.id(i);
+            if (candidate != user.getId() && !user.followsId(candidate)) {
+                top.offer(candidate, counter.count(candidate));
+            }
+        }
+        counter.clear();
+        return true;
     }
 
     /** Computes and returns the name of the most popular user in this network: 
-     *  The user who appears the most in the follow lists of all the users. */
+     *  The user who appears the most in the follow lists of all the users.
+     *  Takes O(1) with the leaderboard, and otherwise checks every user. */
     public String mostPopularUser() {
+        if (leaderboard != null) {
+            int id = leaderboard.top();
+            return (id < 0) ? null : users[id].getName();
+        }
         String mostPopular = null;
         int maxFollowers = 0;
 
-        for (int i = 0; i < userCount; i++) {
-            String candidateName = users[i].getName();
-            int followers = followeeCount(candidateName);
+        for (int i = 0; i < idCount; i++) {
+            int followers = followeeCount(i); // 0 for removed users
             if (followers > maxFollowers) {
                 maxFollowers = followers;
-                mostPopular = candidateName;
+                mostPopular = users[i].getName();
             }
         }
         return mostPopular;
     }
 
-    /** Returns the number of times that the given name appears in the follows lists of all
-     *  the users in this network. Note: A name can appear 0 or 1 times in each list. */
-    private int followeeCount(String name) {
-        int count = 0;
-        for (int i = 0; i < userCount; i++) {
-            if (users[i].follows(name)) {
-                count++;
+    /** Returns the names of the (up to) k most popular users in this network, most popular first.
+     *  Among users with the same number of followers, the one who was added to this network first
+     *  ranks first. Users with no followers are not included. */
+    public String[] mostPopularUsers(int k) {
+        TopK top = new TopK(k);
+        for (int i = 0; i < idCount; i++) {
+            int followers = followeeCount(i);
+            if (followers > 0) {
+                top.offer(i, followers);
             }
         }
-        return count;
+        return namesOf(top.drain());
+    }
+
+    /** Returns the names of the users with the given IDs. */
+    private String[] namesOf(int[] ids) {
+        String[] result = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            result[i] = users[ids[i]].getName();
+        }
+        return result;
+    }
+
+    /** Returns the number of times that the user with the given ID appears in the follows lists of all
+     *  the users in this network. Note: A user can appear 0 or 1 times in each list. */
+    private int followeeCount(int id) {
+        return users[id].getFollowerCount();
+    }
+
+    /** Reclaims the IDs of removed users, and releases the unused capacity of this network
+     *  and of the followee lists of all its users. The network grows again when users are added. */
+    public void trimToSize() {
+        compact();
+        for (int i = 0; i < idCount; i++) {
+            users[i].trimToSize();
+        }
+        users = Arrays.copyOf(users, idCount);
+        names.trimToSize();
+        mutualCounter = null;
+    }
+
+    /** Returns an immutable snapshot of this network, in which all the follow relationships are
+     *  packed into two int arrays. Later changes to this network do not affect the snapshot. */
+    public NetworkSnapshot freeze() {
+        if (idCount == userCount) {
+            int[] offsets = new int[userCount + 1];
+            for (int i = 0; i < userCount; i++) {
+                offsets[i + 1] = offsets[i] + users[i].getfCount();
+            }
+            int[] targets = new int[offsets[userCount]];
+            for (int i = 0; i < userCount; i++) {
+                users[i].copyFolloweeIds(targets, offsets[i]);
+            }
+            return new NetworkSnapshot(names.copy(), offsets, targets);
+        }
+        // The snapshot gets the IDs that compaction would give, without changing this network
+        int[] newIds = newIds();
+        NameTable snapshotNames = new NameTable(userCount);
+        int[] offsets = new int[userCount + 1];
+        for (int i = 0; i < idCount; i++) {
+            if (newIds[i] >= 0) {
+                snapshotNames.add(users[i].getName());
+                offsets[newIds[i] + 1] = offsets[newIds[i]] + users[i].getfCount();
+            }
+        }
+        int[] targets = new int[offsets[userCount]];
+        for (int i = 0; i < idCount; i++) {
+            if (newIds[i] >= 0) {
+                users[i].copyFolloweeIds(targets, offsets[newIds[i]]);
+            }
+        }
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = newIds[targets[i]];
+        }
+        return new NetworkSnapshot(snapshotNames, offsets, targets);
     }
 
-    /** Returns a textual description of all the users in this network, and who they follow. */
     /** Returns a textual description of all the users in this network, and who they follow. */
     public String toString() {
-        String result = "Network:";
-        if (userCount == 0) {
-            return result;
-        }
-        result += "\n";
-        for (int i = 0; i < userCount; i++) {
-            result += users[i].getName() + " ->";
-            String[] f = users[i].getfFollows();
-            int fc = users[i].getfCount();
-            for (int j = 0; j < fc; j++) {
-                result += " " + f[j];
+        int length = "Network:".length();
+        for (int i = 0; i < idCount; i++) {
+            if (!users[i].isRemoved()) {
+                length += users[i].textLength() + 2; // the user, a space, and a line break
             }
-            result += " ";
-            if (i < userCount - 1) {
-                result += "\n";
+        }
+        StringBuilder result = new StringBuilder(length);
+        try {
+            writeTo(result);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Never happens: StringBuilder does not throw
+        }
+        return result.toString();
+    }
+
+    /** Writes the same text as toString to the given output, one user at a time,
+     *  without building the whole text in memory. */
+    public void writeTo(Appendable out) throws IOException {
+        out.append("Network:");
+        int count = idCount;
+        for (int i = 0; i < count; i++) {
+            if (!users[i].isRemoved()) {
+                out.append('\n');
+                users[i].writeTo(out);
+                out.append(' ');
             }
         }
-        return result;
     }
 }
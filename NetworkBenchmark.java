@@ -0,0 +1,199 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Random;
+
+/** Measures the hot paths of User and Network on synthetic graphs, and writes the results as JSON.
+ *  Usage: java NetworkBenchmark [sizes=1000,100000,1000000] [degree=10] [millis=200] [out=benchmark.json]
+ *  For each size, graphs of each GraphGenerator model are built: Erdos-Renyi (uniform degrees),
+ *  Barabasi-Albert (power-law follower counts) and communities, each with size users who follow
+ *  degree users on average.
+ *  Each operation is run repeatedly for a warmup period and then for several measured periods
+ *  of the given length; the reported time is the mean time per operation, with its standard deviation
+ *  over the measured periods. Large sizes need a large heap, e.g. java -Xmx4g NetworkBenchmark. */
+public class NetworkBenchmark {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final int INPUTS = 1 << 12; // number of precomputed random inputs per operation
+
+    private static volatile long sink; // results of the measured calls go here, so they are not optimized away
+
+    private final long iterationNanos;      // length of one warmup or measured period
+    private final ArrayList<String> results; // one JSON object per measured operation
+
+    /** One measured operation, called with a different index each time, to pick its input. */
+    private interface Operation {
+        long run(int i);
+    }
+
+    private NetworkBenchmark(long iterationMillis) {
+        this.iterationNanos = iterationMillis * 1_000_000L;
+        this.results = new ArrayList<String>();
+    }
+
+    public static void main(String[] args) throws IOException {
+        String sizes = "1000,100000,1000000";
+        int degree = 10;
+        long millis = 200;
+        String out = "benchmark.json";
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("sizes=")) {
+                sizes = value;
+            } else if (arg.startsWith("degree=")) {
+                degree = Integer.parseInt(value);
+            } else if (arg.startsWith("millis=")) {
+                millis = Long.parseLong(value);
+            } else if (arg.startsWith("out=")) {
+                out = value;
+            } else {
+                System.out.println("Unknown argument: " + arg);
+                return;
+            }
+        }
+        NetworkBenchmark benchmark = new NetworkBenchmark(millis);
+        for (String size : sizes.split(",")) {
+            for (GraphGenerator.Model model : GraphGenerator.Model.values()) {
+                benchmark.run(model, Integer.parseInt(size.trim()), degree);
+            }
+        }
+        try (Writer writer = new FileWriter(out)) {
+            benchmark.writeJson(writer);
+        }
+        System.out.println("Results written to " + out);
+    }
+
+    /** Builds one graph, and measures all the operations on it. */
+    private void run(GraphGenerator.Model model, int userCount, int degree) {
+        String distribution = model.name();
+        System.out.println("...Building a " + distribution + " graph of " + userCount + " users...");
+        Random random = new Random(userCount);
+        String[] names = new String[userCount];
+        for (int i = 0; i < userCount; i++) {
+            names[i] = GraphGenerator.nameOf(i);
+        }
+        int[] edges = new GraphGenerator(model, userCount, degree, userCount).edges();
+        int edgeCount = edges.length / 2;
+
+        // Building the graph measures addUser and addFollowee, once each
+        Network network = new Network(userCount);
+        long start = System.nanoTime();
+        for (String name : names) {
+            network.addUser(name);
+        }
+        record("addUser", distribution, userCount, new double[] { (System.nanoTime() - start) / (double) userCount });
+        start = System.nanoTime();
+        for (int i = 0; i < edgeCount; i++) {
+            network.addFollowee(names[edges[2 * i]], names[edges[2 * i + 1]]);
+        }
+        record("addFollowee", distribution, userCount, new double[] { (System.nanoTime() - start) / (double) edgeCount });
+        measureBatches(names, edges, distribution);
+        edges = null;
+
+        String[] name1 = new String[INPUTS];
+        String[] name2 = new String[INPUTS];
+        User[] user1 = new User[INPUTS];
+        User[] user2 = new User[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            name1[i] = names[random.nextInt(userCount)];
+            name2[i] = names[random.nextInt(userCount)];
+            user1[i] = network.getUser(name1[i]);
+            user2[i] = network.getUser(name2[i]);
+        }
+        int mask = INPUTS - 1;
+        measure("getUser", distribution, userCount, i -> network.getUser(name1[i & mask]).getfCount());
+        measure("User.follows", distribution, userCount, i -> user1[i & mask].follows(name2[i & mask]) ? 1 : 0);
+        measure("User.countMutual", distribution, userCount, i -> user1[i & mask].countMutual(user2[i & mask]));
+        measure("mostPopularUser", distribution, userCount, i -> String.valueOf(network.mostPopularUser()).length());
+        if (userCount <= 100_000) {
+            // Compares every user with the given one, so it is too slow to measure on the largest graphs
+            measure("recommendWhoToFollow.scan", distribution, userCount,
+                    i -> String.valueOf(network.recommendWhoToFollow(name1[i & mask])).length());
+        }
+        network.setTrackFollowers(true);
+        measure("recommendWhoToFollow", distribution, userCount,
+                i -> String.valueOf(network.recommendWhoToFollow(name1[i & mask])).length());
+        measure("toString", distribution, userCount, i -> network.toString().length());
+    }
+
+    /** Builds the graph again, adding the follow relationships with addFollowees, in batches of INPUTS pairs,
+     *  and records the time per relationship. */
+    private void measureBatches(String[] names, int[] edges, String distribution) {
+        Network network = new Network(names.length);
+        for (String name : names) {
+            network.addUser(name);
+        }
+        int edgeCount = edges.length / 2;
+        long start = System.nanoTime();
+        for (int first = 0; first < edgeCount; first += INPUTS) {
+            String[][] pairs = new String[Math.min(INPUTS, edgeCount - first)][];
+            for (int i = 0; i < pairs.length; i++) {
+                pairs[i] = new String[] { names[edges[2 * (first + i)]], names[edges[2 * (first + i) + 1]] };
+            }
+            network.addFollowees(pairs);
+        }
+        record("addFollowees", distribution, names.length,
+                new double[] { (System.nanoTime() - start) / (double) edgeCount });
+    }
+
+    /** Runs the operation for the warmup periods, then for the measured periods, and records its mean time. */
+    private void measure(String name, String distribution, int userCount, Operation operation) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iterate(operation);
+        }
+        double[] nanosPerOp = new double[MEASURED_ITERATIONS];
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            nanosPerOp[i] = iterate(operation);
+        }
+        record(name, distribution, userCount, nanosPerOp);
+    }
+
+    /** Runs the operation for one period, in batches that double in size, and returns the time per call. */
+    private double iterate(Operation operation) {
+        long calls = 0;
+        long result = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        int batch = 1;
+        do {
+            for (int i = 0; i < batch; i++) {
+                result += operation.run((int) calls + i);
+            }
+            calls += batch;
+            batch = Math.min(batch * 2, 1 << 16);
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        sink = result;
+        return elapsed / (double) calls;
+    }
+
+    /** Adds the result of one operation to the results, and prints it. */
+    private void record(String name, String distribution, int userCount, double[] nanosPerOp) {
+        double mean = 0;
+        for (double value : nanosPerOp) {
+            mean += value / nanosPerOp.length;
+        }
+        double variance = 0;
+        for (double value : nanosPerOp) {
+            variance += (value - mean) * (value - mean) / nanosPerOp.length;
+        }
+        System.out.printf("%-26s %-15s %8d users: %14.1f ns/op (+- %.1f)%n",
+                name, distribution, userCount, mean, Math.sqrt(variance));
+        results.add(String.format(Locale.ROOT,
+                "{\"benchmark\": \"%s\", \"model\": \"%s\", \"users\": %d, \"nsPerOp\": %.1f, "
+                + "\"stdDevNsPerOp\": %.1f, \"iterations\": %d}",
+                name, distribution, userCount, mean, Math.sqrt(variance), nanosPerOp.length));
+    }
+
+    private void writeJson(Writer writer) throws IOException {
+        writer.write("{\n  \"java\": \"" + System.getProperty("java.version") + "\",\n");
+        writer.write("  \"processors\": " + Runtime.getRuntime().availableProcessors() + ",\n");
+        writer.write("  \"results\": [\n");
+        for (int i = 0; i < results.size(); i++) {
+            writer.write("    " + results.get(i) + ((i < results.size() - 1) ? ",\n" : "\n"));
+        }
+        writer.write("  ]\n}\n");
+    }
+}
@@ -0,0 +1,140 @@
+import java.util.TreeMap;
+
+/** Loads a social network from an edge-list text file, read with the In class.
+ *  Each line of the file has two names separated by whitespace: a user, and a user that it follows.
+ *  Every name in the file becomes a user of the network, in order of first appearance.
+ *  Blank lines, and lines that start with '#', are skipped.
+ *  The file is read once. Reading gives every name its ID, records each follow relationship as a pair of IDs,
+ *  and counts the followees of each user. The network and all the followee lists are then created
+ *  at their final sizes, and the follow relationships are added by ID, without looking up names again.
+ *  Lines that are not two names, a user following itself, and repeated lines are rejected,
+ *  and can be listed after loading. */
+public class NetworkLoader {
+    private TreeMap<Integer, String> rejected; // the rejected lines of the last load, by line number
+    private int edgeCount;                     // number of follow relationships added by the last load
+
+    public NetworkLoader() {
+        this.rejected = new TreeMap<Integer, String>();
+        this.edgeCount = 0;
+    }
+
+    /** Loads the network described by the given file. Users can follow any number of users,
+     *  and more users can be added to the network. */
+    public Network load(String fileName) {
+        rejected.clear();
+        edgeCount = 0;
+
+        // Reads the names and the follow relationships, and counts the followees of each user
+        NameTable names = new NameTable(1024);
+        int[] followeeCounts = new int[1024];
+        int[] edges = new int[3 * 1024]; // line number, follower ID and followee ID of each relationship
+        int edgesRead = 0;
+        String lastName = null; // Edge lists often list the followees of a user together,
+        int lastId = -1;        // so the follower of the previous line is remembered
+        In in = new In(fileName);
+        int lineNumber = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            String[] pair = parse(line);
+            if (pair == null) {
+                continue;
+            }
+            if (pair.length != 2) {
+                rejected.put(lineNumber, line);
+                continue;
+            }
+            if (!pair[0].equals(lastName)) {
+                lastName = pair[0];
+                lastId = names.intern(pair[0]);
+            }
+            int id2 = names.intern(pair[1]);
+            if (names.size() > followeeCounts.length) { // Even a rejected line may have added a name
+                int[] grown = new int[followeeCounts.length * 2];
+                System.arraycopy(followeeCounts, 0, grown, 0, followeeCounts.length);
+                followeeCounts = grown;
+            }
+            if (lastId == id2) {
+                rejected.put(lineNumber, line);
+                continue;
+            }
+            followeeCounts[lastId]++;
+            if (edgesRead * 3 == edges.length) {
+                int[] grown = new int[edges.length * 2];
+                System.arraycopy(edges, 0, grown, 0, edges.length);
+                edges = grown;
+            }
+            edges[edgesRead * 3] = lineNumber;
+            edges[edgesRead * 3 + 1] = lastId;
+            edges[edgesRead * 3 + 2] = id2;
+            edgesRead++;
+        }
+        in.close();
+
+        // Creates the users, with room for all their followees. The network starts with room for exactly
+        // these users, and grows if more are added later
+        Network network = new Network(names.size(), Network.DEFAULT_GROWTH_FACTOR, Integer.MAX_VALUE);
+        for (int id = 0; id < names.size(); id++) {
+            network.addUser(names.nameOf(id)); // Gets the same ID as in names
+            network.userAt(id).getFollowees().ensureCapacity(followeeCounts[id]);
+        }
+
+        // Adds the follow relationships, in the order of the file
+        for (int i = 0; i < edgesRead; i++) {
+            int id1 = edges[i * 3 + 1];
+            int id2 = edges[i * 3 + 2];
+            if (network.userAt(id1).addFolloweeId(id2)) {
+                edgeCount++;
+            } else {
+                rejected.put(edges[i * 3], names.nameOf(id1) + " " + names.nameOf(id2));
+            }
+        }
+        return network;
+    }
+
+    /** Returns the number of follow relationships that the last load added. */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /** Returns the lines that the last load rejected, in file order, each one prefixed by its line number.
+     *  Repeated lines are given as the two names, separated by a space. */
+    public String[] getRejectedLines() {
+        String[] lines = new String[rejected.size()];
+        int i = 0;
+        for (Integer lineNumber : rejected.keySet()) {
+            lines[i++] = lineNumber + ": " + rejected.get(lineNumber);
+        }
+        return lines;
+    }
+
+    /** Splits the given line into its whitespace-separated names.
+     *  Returns null if the line should be skipped, and an array of length other than 2 if it is malformed. */
+    private static String[] parse(String line) {
+        int start = skipWhitespace(line, 0);
+        if (start == line.length() || line.charAt(start) == '#') {
+            return null;
+        }
+        int end1 = skipName(line, start);
+        int start2 = skipWhitespace(line, end1);
+        int end2 = skipName(line, start2);
+        if (start2 == end2 || skipWhitespace(line, end2) != line.length()) {
+            return new String[0];
+        }
+        return new String[] { line.substring(start, end1), line.substring(start2, end2) };
+    }
+
+    private static int skipWhitespace(String line, int i) {
+        while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipName(String line, int i) {
+        while (i < line.length() && !Character.isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,51 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class NetworkLoaderTest {
+    public static void main(String[] args) throws IOException {
+        System.out.println("Testing the NetworkLoader class...\n");
+
+        // Writes a small edge list with a comment, a blank line, malformed lines, a self-follow and a repeated line
+        System.out.println("...Loading a small file with some bad lines...");
+        Path small = Files.createTempFile("network", ".txt");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(small))) {
+            out.println("# Who follows whom");
+            out.println("Alex Orly");
+            out.println("Alex Idan");
+            out.println("");
+            out.println("Orly");             // malformed: one name
+            out.println("Orly Alex Idan");   // malformed: three names
+            out.println("Idan Idan");        // a user following itself
+            out.println("Orly Alex");
+            out.println("Alex Orly");        // repeated
+            out.println("Keren Keren");      // a user following itself, seen for the first time
+            out.println("Keren Alex");
+        }
+        NetworkLoader loader = new NetworkLoader();
+        Network net = loader.load(small.toString());
+        System.out.println(net);
+        System.out.println("Follow relationships added: " + loader.getEdgeCount());
+        System.out.println("Rejected lines: " + Arrays.toString(loader.getRejectedLines()));
+        Files.delete(small);
+
+        // A self-follow that adds the 1025th name, on the last line
+        System.out.println("\n...Loading a file whose self-follow line brings a name past the first 1024...");
+        Path large = Files.createTempFile("network", ".txt");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(large))) {
+            for (int i = 0; i < 512; i++) {
+                out.println("a" + i + " b" + i);
+            }
+            out.println("zz zz"); // the last line, so no later line grows the counts
+        }
+        net = loader.load(large.toString());
+        System.out.println("Users: " + net.getUserCount() + ", follow relationships added: " + loader.getEdgeCount());
+        System.out.println("Rejected lines: " + Arrays.toString(loader.getRejectedLines()));
+        System.out.println("The user zz: " + net.getUser("zz"));
+        Files.delete(large);
+
+        System.out.println("\nAll NetworkLoader class tests completed.");
+    }
+}
@@ -0,0 +1,308 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/** An append-only log of the changes made to a network, which makes the changes durable between snapshots.
+ *  A network that is given a log with Network.setLog records every user that is added or removed,
+ *  and every follow relationship that is added or removed, in that log. Each record is written as its length,
+ *  a checksum, and the record itself; a record that was only partly written when a process stopped
+ *  is detected and dropped when the log is opened again.
+ *  With a flush interval of 0, each change is forced to the disk before the changing method returns.
+ *  With a positive flush interval, changes are only copied into memory, and a background thread writes
+ *  and forces all the changes of each interval together (group commit): a change costs about a microsecond,
+ *  and the changes of the last interval can be lost if the process stops. sync forces them at once.
+ *  To restart a network: load the latest snapshot with MappedNetwork.toNetwork, open the log,
+ *  replay it onto the network, and then give the log to the network.
+ *  compact writes a new snapshot and drops the records that it contains from the log. */
+public class NetworkLog {
+    static final byte ADD_USER = 1;
+    static final byte ADD_FOLLOWEE = 2;
+    static final byte REMOVE_FOLLOWEE = 3;
+    static final byte REMOVE_USER = 4;
+
+    private final Path path;
+    private final long flushInterval;             // in milliseconds; 0 forces each change immediately
+    private final Object fileLock;                // guards the file; taken before the lock on this log
+    private FileChannel channel;                  // open for appending at the end of the last complete record
+    private ByteBuffer pending;                   // records that were logged but not yet written; guarded by this log
+    private ByteBuffer spare;                     // an empty buffer that takes the place of pending when it is written
+    private final CRC32 checksum;
+    private final ScheduledExecutorService flusher; // null if the flush interval is 0
+    private volatile IOException failure;         // the error of the last background flush, reported by the next change
+    private int recordCount;                      // number of complete records that the last scan found
+
+    /** Opens the log in the given file, creating the file if needed, and drops a partly written
+     *  record at its end. Changes are forced to the disk every flushInterval milliseconds,
+     *  or at once if flushInterval is 0. */
+    public NetworkLog(String fileName, long flushInterval) throws IOException {
+        this.path = Paths.get(fileName);
+        this.flushInterval = flushInterval;
+        this.fileLock = new Object();
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.pending = ByteBuffer.allocate(1 << 16);
+        this.spare = ByteBuffer.allocate(1 << 16);
+        this.checksum = new CRC32();
+        long end = scan(null);
+        channel.truncate(end);
+        channel.position(end);
+        if (flushInterval > 0) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "NetworkLog flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flushInBackground, flushInterval, flushInterval,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    /** Applies all the records of this log to the given network, in order, and returns their number.
+     *  Records that are already reflected in the network, such as users that it already has,
+     *  change nothing. The network should not have a log yet, so that the records are not logged again. */
+    public int replay(Network network) throws IOException {
+        synchronized (fileLock) {
+            sync();
+            scan(network);
+            return recordCount;
+        }
+    }
+
+    /** Records that a user with the given name was added. */
+    void userAdded(String name) {
+        append(ADD_USER, name, null);
+    }
+
+    /** Records that the user with the given name was removed. */
+    void userRemoved(String name) {
+        append(REMOVE_USER, name, null);
+    }
+
+    /** Records that the user with name1 started following the user with name2. */
+    void followeeAdded(String name1, String name2) {
+        append(ADD_FOLLOWEE, name1, name2);
+    }
+
+    /** Records that the user with name1 stopped following the user with name2. */
+    void followeeRemoved(String name1, String name2) {
+        append(REMOVE_FOLLOWEE, name1, name2);
+    }
+
+    /** Writes all the logged changes to the file, and forces them to the disk. */
+    public void sync() throws IOException {
+        synchronized (fileLock) {
+            reportFailure();
+            write();
+            channel.force(false);
+        }
+    }
+
+    /** Writes a snapshot of the given network to the given file, replacing it, and then drops from this log
+     *  all the records that the snapshot contains. The network must be the one that writes to this log.
+     *  If the process stops during compaction, the snapshot and the log still restore the network:
+     *  replaying a record onto a network that already reflects it changes nothing. */
+    public void compact(Network network, String snapshotFileName) throws IOException {
+        long mark;
+        synchronized (fileLock) {
+            sync();
+            mark = channel.size(); // Every change up to here is in the network, so the snapshot will have it
+        }
+        Path temporary = Paths.get(snapshotFileName + ".tmp");
+        network.freeze().save(temporary.toString());
+        Files.move(temporary, Paths.get(snapshotFileName), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        synchronized (fileLock) {
+            sync();
+            // Copies the records that were logged after the mark to a new log, which then replaces this one
+            Path rest = Paths.get(path + ".tmp");
+            try (FileChannel out = FileChannel.open(rest, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                long position = mark;
+                long end = channel.size();
+                while (position < end) {
+                    position += channel.transferTo(position, end - position, out);
+                }
+                out.force(false);
+            }
+            Files.move(rest, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel.close();
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        }
+    }
+
+    /** Writes and forces all the logged changes, stops the background thread, and closes the file. */
+    public void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        synchronized (fileLock) {
+            sync();
+            channel.close();
+        }
+    }
+
+    /** Adds a record to the log. If there is no flush interval, also writes it and forces it to the disk. */
+    private void append(byte type, String name1, String name2) {
+        if (flushInterval > 0) {
+            encode(type, name1, name2);
+            return;
+        }
+        try {
+            synchronized (fileLock) {
+                encode(type, name1, name2);
+                sync();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Adds a record to the pending records, growing the buffer if needed. */
+    private synchronized void encode(byte type, String name1, String name2) {
+        if (failure != null) {
+            throw new UncheckedIOException(new IOException("Writing the network log failed", failure));
+        }
+        byte[] bytes1 = name1.getBytes(StandardCharsets.UTF_8);
+        byte[] bytes2 = (name2 == null) ? null : name2.getBytes(StandardCharsets.UTF_8);
+        int length = 1 + 4 + bytes1.length + ((bytes2 == null) ? 0 : 4 + bytes2.length);
+        if (pending.remaining() < 8 + length) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + 8 + length));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+        int start = pending.position();
+        pending.putInt(length);
+        pending.putInt(0); // The checksum, filled in below
+        pending.put(type);
+        pending.putInt(bytes1.length);
+        pending.put(bytes1);
+        if (bytes2 != null) {
+            pending.putInt(bytes2.length);
+            pending.put(bytes2);
+        }
+        checksum.reset();
+        checksum.update(pending.array(), start + 8, length);
+        pending.putInt(start + 4, (int) checksum.getValue());
+    }
+
+    /** Writes the pending records to the file, without forcing them to the disk.
+     *  New records go to the spare buffer meanwhile, so appending never waits for the disk. */
+    private void write() throws IOException {
+        ByteBuffer full;
+        synchronized (this) {
+            if (pending.position() == 0) return;
+            full = pending;
+            pending = spare;
+        }
+        full.flip();
+        while (full.hasRemaining()) {
+            channel.write(full);
+        }
+        full.clear();
+        synchronized (this) {
+            spare = full;
+        }
+    }
+
+    private void flushInBackground() {
+        synchronized (fileLock) {
+            if (failure != null) return;
+            try {
+                write();
+                channel.force(false);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+
+    /** Throws the error of the last background flush, if there was one. */
+    private void reportFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Writing the network log failed", failure);
+        }
+    }
+
+    /** Reads the records of the file from its start, applies them to the given network if it is not null,
+     *  and sets recordCount. Returns the position just after the last complete record. */
+    private long scan(Network network) throws IOException {
+        long end = channel.size();
+        long position = 0;
+        int count = 0;
+        ByteBuffer header = ByteBuffer.allocate(8);
+        CRC32 check = new CRC32();
+        while (position + 8 <= end) {
+            header.clear();
+            readFully(header, position);
+            int length = header.getInt(0);
+            if (length < 5 || position + 8 + length > end) {
+                break; // Partly written
+            }
+            ByteBuffer record = ByteBuffer.allocate(length);
+            readFully(record, position + 8);
+            check.reset();
+            check.update(record.array(), 0, length);
+            if ((int) check.getValue() != header.getInt(4)) {
+                break; // Partly written
+            }
+            if (network != null) {
+                apply(record, network);
+            }
+            position += 8 + length;
+            count++;
+        }
+        recordCount = count;
+        return position;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException(path + " changed while it was read");
+            }
+        }
+    }
+
+    /** Applies one record, whose checksum was checked, to the given network. */
+    private static void apply(ByteBuffer record, Network network) {
+        record.flip();
+        byte type = record.get();
+        String name1 = readName(record);
+        if (type == ADD_USER) {
+            network.addUser(name1);
+            return;
+        }
+        if (type == REMOVE_USER) {
+            network.removeUser(name1);
+            return;
+        }
+        String name2 = readName(record);
+        if (type == ADD_FOLLOWEE) {
+            network.addFollowee(name1, name2);
+        } else if (type == REMOVE_FOLLOWEE) {
+            network.removeFollowee(name1, name2);
+        }
+    }
+
+    private static String readName(ByteBuffer record) {
+        byte[] bytes = new byte[record.getInt()];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
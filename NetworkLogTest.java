@@ -0,0 +1,92 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class NetworkLogTest {
+    static final String[] NAMES = { "Alex", "Orly", "Idan", "Keren", "Neta", "Zohar" };
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("Testing the NetworkLog class...\n");
+        Path dir = Files.createTempDirectory("networklog");
+        String logFile = dir.resolve("network.log").toString();
+        String snapshotFile = dir.resolve("network.snapshot").toString();
+
+        // Makes changes, compacts the log into a snapshot, and makes more changes that only the log has
+        System.out.println("...Changing a logged network, and compacting its log in the middle...");
+        NetworkLog log = new NetworkLog(logFile, 0);
+        Network net = new Network(100);
+        net.setLog(log);
+        for (int i = 0; i < 4; i++) {
+            net.addUser(NAMES[i]);
+        }
+        net.addFollowee("Alex", "Orly");
+        net.addFollowee("Alex", "Idan");
+        net.addFollowee("Orly", "Idan");
+        net.addFollowee("Keren", "Alex");
+        log.compact(net, snapshotFile);
+        net.addUser("Neta");
+        net.addUser("Zohar");
+        net.addFollowee("Neta", "Alex");
+        net.addFollowee("Zohar", "Keren");
+        net.removeFollowee("Alex", "Idan");
+        net.removeUser("Orly");
+        log.close();
+        System.out.println(net);
+
+        // Restores the network: the snapshot, then the records logged after it
+        System.out.println("\n...Restoring it from the snapshot and the log...");
+        Network restored = new MappedNetwork(snapshotFile).toNetwork(100);
+        NetworkLog reopened = new NetworkLog(logFile, 0);
+        System.out.println("Records replayed: " + reopened.replay(restored));
+        reopened.close();
+        System.out.println(restored);
+        System.out.println("The restored network has the same users and follow relationships: " + same(net, restored));
+
+        // A change whose record cannot be written fails, and leaves the network unchanged
+        System.out.println("\n...Changing a network whose log was closed...");
+        NetworkLog closed = new NetworkLog(dir.resolve("closed.log").toString(), 0);
+        Network failing = new Network(100);
+        failing.addUser("Alex");
+        failing.addUser("Orly");
+        failing.addUser("Idan");
+        failing.addFollowee("Alex", "Orly");
+        failing.setLog(closed);
+        closed.close();
+        System.out.println("Adding a followee fails: " + fails(() -> failing.addFollowee("Alex", "Idan")));
+        System.out.println("Removing a followee fails: " + fails(() -> failing.removeFollowee("Alex", "Orly")));
+        System.out.println("Removing a user fails: " + fails(() -> failing.removeUser("Orly")));
+        System.out.println(failing);
+
+        for (String file : new String[] { logFile, snapshotFile, dir.resolve("closed.log").toString() }) {
+            Files.deleteIfExists(Path.of(file));
+        }
+        Files.delete(dir);
+        System.out.println("\nAll NetworkLog class tests completed.");
+    }
+
+    /** Checks if the two networks have the same users, and the same follow relationships between them. */
+    private static boolean same(Network net1, Network net2) {
+        if (net1.getUserCount() != net2.getUserCount()) return false;
+        for (String name1 : NAMES) {
+            User user1 = net1.getUser(name1);
+            User user2 = net2.getUser(name1);
+            if ((user1 == null) != (user2 == null)) return false;
+            if (user1 == null) continue;
+            for (String name2 : NAMES) {
+                if (user1.follows(name2) != user2.follows(name2)) return false;
+            }
+        }
+        return true;
+    }
+
+    /** Runs the given change, and checks if it failed because its record could not be written. */
+    private static boolean fails(Runnable change) {
+        try {
+            change.run();
+            return false;
+        } catch (UncheckedIOException e) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** A server that answers queries about a network over TCP, with a simple line protocol.
+ *  Each request is one line of words separated by spaces, and each response is one line:
+ *  "OK" followed by the result, or "ERROR" followed by a message. The requests are:
+ *  GET name              - the user, as User.toString shows it, or null
+ *  ADD name              - adds a user; true if it was added
+ *  FOLLOW name1 name2    - makes name1 follow name2; true if the relationship was added
+ *  RECOMMEND name        - the result of recommendWhoToFollow, or null
+ *  POPULAR               - the result of mostPopularUser, or null
+ *  QUIT                  - closes the connection
+ *  Command names are not case sensitive. A client may send many requests without waiting for the responses;
+ *  they are answered in order.
+ *  Each connection is served by its own thread: a virtual thread on Java 21 and later, so that tens of thousands
+ *  of mostly idle connections are cheap, and a platform thread on older versions. An idle connection holds
+ *  only a small line buffer. The server listens on the loopback address only.
+ *  Usage: java NetworkServer [port] */
+public class NetworkServer implements Closeable {
+    static final int MAX_LINE_LENGTH = 4096; // longer requests are refused, and their connection is closed
+
+    private final ConcurrentNetwork network;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;  // runs one task per connection
+    private final Set<Socket> sockets;          // the open connections, closed when the server is closed
+    private final boolean virtualThreads;       // whether connections are served by virtual threads
+    private volatile boolean closed;
+
+    /** Creates a server for the given network, listening on the given port of the loopback address.
+     *  Port 0 chooses a free port; see getPort. The server accepts connections once it is started. */
+    public NetworkServer(ConcurrentNetwork network, int port) throws IOException {
+        this.network = network;
+        this.serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        this.sockets = ConcurrentHashMap.newKeySet();
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.connections = virtualThreads ? virtual : Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "NetworkServer connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : 4500;
+        NetworkServer server = new NetworkServer(new ConcurrentNetwork(), port);
+        server.start();
+        System.out.println("Serving an empty network on port " + server.getPort()
+                + ((server.usesVirtualThreads()) ? ", with virtual threads" : ", with platform threads"));
+    }
+
+    /** Returns the port on which this server listens. */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /** Checks if connections are served by virtual threads. */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /** Starts accepting connections, in a new thread, and returns. */
+    public void start() {
+        Thread acceptor = new Thread(this::acceptConnections, "NetworkServer acceptor");
+        acceptor.start();
+    }
+
+    /** Stops accepting connections, and closes all the open connections. */
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        connections.shutdown();
+    }
+
+    private void acceptConnections() {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (closed) return;
+                continue; // A connection that failed while it was accepted; the server goes on
+            }
+            sockets.add(socket);
+            if (closed) { // close may have missed the socket
+                closeQuietly(socket);
+                return;
+            }
+            connections.execute(() -> serve(socket));
+        }
+    }
+
+    /** Answers the requests of one connection, until the client closes it or sends QUIT. */
+    private void serve(Socket socket) {
+        try {
+            socket.setTcpNoDelay(true);
+            LineReader in = new LineReader(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            StringBuilder responses = new StringBuilder();
+            String request;
+            while ((request = in.readLine()) != null) {
+                if (in.wasTooLong()) {
+                    responses.append("ERROR A request is longer than " + MAX_LINE_LENGTH + " bytes\n");
+                    break;
+                }
+                if (request.trim().equalsIgnoreCase("QUIT")) break;
+                responses.append(answer(request)).append('\n');
+                // Responses to requests that already arrived are sent together, in one write
+                if (!in.hasBufferedLine()) {
+                    out.write(responses.toString().getBytes(StandardCharsets.UTF_8));
+                    responses.setLength(0);
+                }
+            }
+            if (responses.length() > 0) {
+                out.write(responses.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (SocketException e) {
+            // The client, or close, closed the connection
+        } catch (IOException e) {
+            if (!closed) {
+                System.err.println("NetworkServer: " + e.getMessage());
+            }
+        } finally {
+            sockets.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    /** Returns the response line to the given request line, without its line break. */
+    String answer(String request) {
+        String[] words = request.trim().split(" +");
+        String command = words[0].toUpperCase(Locale.ROOT);
+        switch (command) {
+            case "GET":
+                if (words.length != 2) break;
+                User user = network.getUser(words[1]);
+                return "OK " + ((user == null) ? "null" : user.toString());
+            case "ADD":
+                if (words.length != 2) break;
+                return "OK " + network.addUser(words[1]);
+            case "FOLLOW":
+                if (words.length != 3) break;
+                return "OK " + network.addFollowee(words[1], words[2]);
+            case "RECOMMEND":
+                if (words.length != 2) break;
+                return "OK " + network.recommendWhoToFollow(words[1]);
+            case "POPULAR":
+                if (words.length != 1) break;
+                return "OK " + network.mostPopularUser();
+            default:
+                return "ERROR Unknown command: " + words[0];
+        }
+        return "ERROR Wrong number of arguments: " + request.trim();
+    }
+
+    /** Returns an executor that runs each task in a new virtual thread, or null if this Java version has none.
+     *  Looked up by reflection, so the server also compiles and runs on versions before Java 21. */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing more to do with it
+        }
+    }
+
+    /** Reads UTF-8 lines from a stream into a small buffer, which grows only while a long line is read. */
+    private static class LineReader {
+        private final InputStream in;
+        private byte[] buffer = new byte[256];
+        private int start; // the first unread byte in buffer
+        private int end;   // the end of the bytes read into buffer
+        private boolean tooLong; // whether the last line returned was cut
+
+        LineReader(InputStream in) {
+            this.in = in;
+        }
+
+        /** Returns the next line, without its line break, or null at the end of the stream.
+         *  A line longer than MAX_LINE_LENGTH bytes is cut after MAX_LINE_LENGTH + 1 bytes; see wasTooLong. */
+        String readLine() throws IOException {
+            if (start == end && buffer.length > 256) {
+                buffer = new byte[256]; // Gives back the room that a long line took
+                start = 0;
+                end = 0;
+            }
+            int scanned = start;
+            while (true) {
+                for (; scanned < end; scanned++) {
+                    if (buffer[scanned] == '\n') {
+                        tooLong = scanned - start > MAX_LINE_LENGTH;
+                        int length = (scanned > start && buffer[scanned - 1] == '\r') ? scanned - 1 - start : scanned - start;
+                        String line = new String(buffer, start, length, StandardCharsets.UTF_8);
+                        start = scanned + 1;
+                        return line;
+                    }
+                }
+                if (end - start > MAX_LINE_LENGTH) {
+                    tooLong = true;
+                    return readLast();
+                }
+                // Makes room after the unread bytes: moves them to the start, or grows the buffer
+                if (start > 0) {
+                    System.arraycopy(buffer, start, buffer, 0, end - start);
+                    scanned -= start;
+                    end -= start;
+                    start = 0;
+                }
+                if (end == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                int read = in.read(buffer, end, buffer.length - end);
+                if (read < 0) {
+                    return (end > start) ? readLast() : null;
+                }
+                end += read;
+            }
+        }
+
+        /** Returns all the unread bytes as a line. */
+        private String readLast() {
+            String line = new String(buffer, start, end - start, StandardCharsets.UTF_8);
+            start = end;
+            return line;
+        }
+
+        /** Checks if the last line returned by readLine was cut because it was too long. */
+        boolean wasTooLong() {
+            return tooLong;
+        }
+
+        /** Checks if a whole line was already read into the buffer, so readLine will not wait for the stream. */
+        boolean hasBufferedLine() {
+            for (int i = start; i < end; i++) {
+                if (buffer[i] == '\n') {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
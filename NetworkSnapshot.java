@@ -0,0 +1,120 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/** An immutable copy of a social network, made for read-heavy analytics.
+ *  The follow edges of all the users are packed into two arrays (compressed sparse row layout):
+ *  the IDs of the users that user i follows are targets[offsets[i]] ... targets[offsets[i + 1] - 1],
+ *  sorted in increasing order. User IDs are the ones that the network's users would have after compaction:
+ *  0 ... n - 1, in the order in which the users were added, without removed users.
+ *  Snapshots are created by Network.freeze(), and can be saved to a file that MappedNetwork reads. */
+public class NetworkSnapshot {
+    private final NameTable names;  // the names of the users, by ID
+    private final int[] offsets;    // row i of targets starts at offsets[i]; has one extra entry at the end
+    private final int[] targets;    // the followee IDs of all the users, row after row
+    private final int[] followers;  // followers[i] is the number of users that follow user i
+
+    /** Creates a snapshot from arrays that were built by Network.freeze(). */
+    NetworkSnapshot(NameTable names, int[] offsets, int[] targets) {
+        this.names = names;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.followers = new int[offsets.length - 1];
+        for (int i = 0; i < targets.length; i++) {
+            followers[targets[i]]++;
+        }
+        for (int i = 0; i < followers.length; i++) {
+            Arrays.sort(targets, offsets[i], offsets[i + 1]);
+        }
+    }
+
+    public int getUserCount() {
+        return followers.length;
+    }
+
+    /** Returns the total number of follow relationships in this snapshot. */
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    /** Checks if the user with name1 follows the user with name2. */
+    public boolean follows(String name1, String name2) {
+        int id1 = names.idOf(name1);
+        int id2 = names.idOf(name2);
+        return id1 >= 0 && id2 >= 0 && followsId(id1, id2);
+    }
+
+    /** Returns the number of users that follow the user with the given name,
+     *  or 0 if there is no such user. */
+    public int followeeCount(String name) {
+        int id = names.idOf(name);
+        return (id < 0) ? 0 : followers[id];
+    }
+
+    /** Returns the number of users that both the user with name1 and the user with name2 follow. */
+    public int countMutual(String name1, String name2) {
+        int id1 = names.idOf(name1);
+        int id2 = names.idOf(name2);
+        return (id1 < 0 || id2 < 0) ? 0 : countMutual(id1, id2);
+    }
+
+    /** Recommends another user to follow, exactly like Network.recommendWhoToFollow. */
+    public String recommendWhoToFollow(String name) {
+        int id = names.idOf(name);
+        if (id < 0) return null;
+
+        int recommendation = -1;
+        int maxMutual = 0;
+        for (int candidate = 0; candidate < followers.length; candidate++) {
+            if (candidate != id && !followsId(id, candidate)) {
+                int mutual = countMutual(id, candidate);
+                if (mutual > maxMutual) {
+                    maxMutual = mutual;
+                    recommendation = candidate;
+                }
+            }
+        }
+        return (recommendation < 0) ? null : names.nameOf(recommendation);
+    }
+
+    /** Returns the name of the most popular user, exactly like Network.mostPopularUser. */
+    public String mostPopularUser() {
+        int mostPopular = -1;
+        int maxFollowers = 0;
+        for (int i = 0; i < followers.length; i++) {
+            if (followers[i] > maxFollowers) {
+                maxFollowers = followers[i];
+                mostPopular = i;
+            }
+        }
+        return (mostPopular < 0) ? null : names.nameOf(mostPopular);
+    }
+
+    /** Writes this snapshot to the given file, replacing the file if it exists.
+     *  The file can then be opened with MappedNetwork. */
+    public void save(String fileName) throws IOException {
+        MappedNetwork.write(fileName, names, offsets, targets);
+    }
+
+    private boolean followsId(int id1, int id2) {
+        return Arrays.binarySearch(targets, offsets[id1], offsets[id1 + 1], id2) >= 0;
+    }
+
+    /** Counts the common entries of two rows, by merging them. */
+    private int countMutual(int id1, int id2) {
+        int i = offsets[id1], iEnd = offsets[id1 + 1];
+        int j = offsets[id2], jEnd = offsets[id2 + 1];
+        int count = 0;
+        while (i < iEnd && j < jEnd) {
+            if (targets[i] < targets[j]) {
+                i++;
+            } else if (targets[i] > targets[j]) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+}
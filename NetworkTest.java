@@ -1,5 +1,7 @@
+import java.util.Arrays;
+
 public class NetworkTest {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws InterruptedException {
         System.out.println("Testing the Network class...\n");
 
         System.out.println("...To get started, creating a dummy network for testing the toString and getUser methods...\n");
@@ -46,6 +48,39 @@ public class NetworkTest {
         System.out.println("\n...Finding the most popular user...");
         System.out.println("The most popular user is: " + net.mostPopularUser());
 
+        System.out.println("\n...Finding the top 3 users, and the top 3 recommendations for Alex...");
+        System.out.println("The most popular users are: " + Arrays.toString(net.mostPopularUsers(3)));
+        System.out.println("Recommended for Alex: " + Arrays.toString(net.recommendWhoToFollow("Alex", 3)));
+
+        System.out.println("\n...Freezing the network into a read-only snapshot...");
+        NetworkSnapshot snapshot = net.freeze();
+        System.out.println("Snapshot: recommended for Alex: " + snapshot.recommendWhoToFollow("Alex")
+                           + ", most popular user: " + snapshot.mostPopularUser()
+                           + ", followers of Zohar: " + snapshot.followeeCount("Zohar"));
+
+        System.out.println("\n...Removing Zohar, and making Orly stop following Or...");
+        net.removeUser("Zohar");
+        net.removeFollowee("Orly", "Or");
+        System.out.println(net);
+        System.out.println("Users: " + net.getUserCount() + ", most popular user: " + net.mostPopularUser());
+
+        System.out.println("\n...Adding users and follows from 4 threads to a concurrent network...");
+        ConcurrentNetwork shared = new ConcurrentNetwork(100);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    shared.addUser("User" + i);
+                    shared.addFollowee("User" + i, "User" + (i / 2));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        System.out.println("Users: " + shared.getUserCount() + ", most popular user: " + shared.mostPopularUser());
+
         System.out.println("\nAll Network class tests completed.");
     }
 }
@@ -0,0 +1,140 @@
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** A bounded cache of the users recommended by recommendWhoToFollow, one entry per user.
+ *  When it is full, the least recently used entry is evicted.
+ *  Each entry remembers the followees that its user had when it was computed, and the cache keeps
+ *  an index from each of those followees to the cached users that follow it, so the entries that
+ *  a change of a follow relationship affects are found without checking the whole cache.
+ *  Every invalidation starts a new generation, and an entry computed during an earlier generation
+ *  is not stored, so a recommendation that was computed while the network changed is never kept.
+ *  Safe for use by several threads: every method holds the lock on this cache. */
+class RecommendationCache {
+    /** The value of an entry of a user for whom there is no user to recommend. */
+    static final String NONE = new String("none");
+
+    /** A cached recommendation, and the IDs of the followees its user had when it was computed. */
+    private static class Entry {
+        final String recommendation;
+        final int[] followeeIds;
+
+        Entry(String recommendation, int[] followeeIds) {
+            this.recommendation = recommendation;
+            this.followeeIds = followeeIds;
+        }
+    }
+
+    private final LinkedHashMap<User, Entry> entries; // in order of use, least recently used first
+    private final HashMap<Integer, HashSet<User>> followersOf; // followee ID -> the cached users that follow it
+    private final int maxEntries;
+    private long generation; // number of invalidations so far
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /** Creates an empty cache that keeps up to maxEntries recommendations. */
+    RecommendationCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.followersOf = new HashMap<Integer, HashSet<User>>();
+        this.entries = new LinkedHashMap<User, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<User, Entry> eldest) {
+                if (size() <= RecommendationCache.this.maxEntries) return false;
+                unindex(eldest.getKey(), eldest.getValue());
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /** Returns the cached recommendation for the given user, NONE if it is cached that there is none,
+     *  or null if it is not cached. */
+    synchronized String get(User user) {
+        Entry entry = entries.get(user);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.recommendation;
+    }
+
+    /** Returns the current generation. A recommendation should be computed after reading it,
+     *  and then stored with it. */
+    synchronized long generation() {
+        return generation;
+    }
+
+    /** Stores the given recommendation (or NONE) for the given user, who follows the users with the given IDs,
+     *  unless the cache was invalidated since the given generation. */
+    synchronized void put(User user, String recommendation, int[] followeeIds, long generation) {
+        if (generation != this.generation) return;
+        Entry old = entries.remove(user);
+        if (old != null) {
+            unindex(user, old);
+        }
+        for (int followeeId : followeeIds) {
+            followersOf.computeIfAbsent(followeeId, id -> new HashSet<User>()).add(user);
+        }
+        entries.put(user, new Entry(recommendation, followeeIds));
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /** Drops the entries that can change when the given user starts or stops following the user
+     *  with the given ID: the entry of the follower, and the entries of the users that follow the followee. */
+    synchronized void invalidate(User follower, int followeeId) {
+        generation++;
+        remove(follower);
+        HashSet<User> followers = followersOf.get(followeeId);
+        if (followers != null) {
+            for (User user : followers.toArray(new User[0])) {
+                remove(user);
+            }
+        }
+    }
+
+    /** Drops all the entries. */
+    synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+        followersOf.clear();
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /** Drops the entry of the given user, if there is one. */
+    private void remove(User user) {
+        Entry entry = entries.remove(user);
+        if (entry != null) {
+            unindex(user, entry);
+        }
+    }
+
+    /** Removes the given user from the index of the followees of its entry. */
+    private void unindex(User user, Entry entry) {
+        for (int followeeId : entry.followeeIds) {
+            HashSet<User> followers = followersOf.get(followeeId);
+            if (followers != null) {
+                followers.remove(user);
+                if (followers.isEmpty()) {
+                    followersOf.remove(followeeId);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+import java.util.Arrays;
+
+/** Keeps the k best (ID, score) pairs offered to it, in a bounded min-heap whose root is the worst kept pair.
+ *  A pair is better than another if its score is higher, or if the scores are equal and its ID is smaller.
+ *  Offering n pairs costs O(n log k). */
+class TopK {
+    private final int k;   // the number of pairs to keep
+    private int[] ids;     // the heap of kept pairs: ids[i] and scores[i] make one pair; grows up to k
+    private int[] scores;
+    private int size;      // number of kept pairs (at most k)
+
+    /** Creates an empty collector for the k best pairs. */
+    TopK(int k) {
+        this.k = Math.max(k, 0);
+        this.ids = new int[Math.min(this.k, 16)];
+        this.scores = new int[Math.min(this.k, 16)];
+        this.size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Offers the given pair. It is kept if it is among the k best pairs offered so far. */
+    void offer(int id, int score) {
+        if (size < k) {
+            if (size == ids.length) {
+                int length = (int) Math.min(k, 2L * ids.length);
+                ids = Arrays.copyOf(ids, length);
+                scores = Arrays.copyOf(scores, length);
+            }
+            int i = size++;
+            // Sifts the new pair up, while it is worse than its parent
+            while (i > 0 && worse(id, score, ids[(i - 1) / 2], scores[(i - 1) / 2])) {
+                ids[i] = ids[(i - 1) / 2];
+                scores[i] = scores[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+            ids[i] = id;
+            scores[i] = score;
+        } else if (size > 0 && worse(ids[0], scores[0], id, score)) {
+            siftDown(id, score);
+        }
+    }
+
+    /** Returns the IDs of the kept pairs, best first, and empties this collector. */
+    int[] drain() {
+        int[] result = new int[size];
+        while (size > 0) {
+            result[size - 1] = ids[0];
+            size--;
+            if (size > 0) {
+                siftDown(ids[size], scores[size]);
+            }
+        }
+        return result;
+    }
+
+    /** Puts the given pair at the root, and sifts it down to its place. */
+    private void siftDown(int id, int score) {
+        int i = 0;
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && worse(ids[child + 1], scores[child + 1], ids[child], scores[child])) {
+                child++;
+            }
+            if (!worse(ids[child], scores[child], id, score)) {
+                break;
+            }
+            ids[i] = ids[child];
+            scores[i] = scores[child];
+            i = child;
+        }
+        ids[i] = id;
+        scores[i] = score;
+    }
+
+    private static boolean worse(int id1, int score1, int id2, int score2) {
+        return score1 < score2 || (score1 == score2 && id1 > id2);
+    }
+}
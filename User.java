@@ -1,16 +1,24 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 /** Represents a user in a social network. */
 public class User {
-    static int maxfCount = 10; // Maximum number of users a user can follow
+    static int maxfCount = 10; // Maximum number of users that a user outside a network can follow
 
-    private String name;       // Name of this user
-    private String[] follows;  // Array of usernames that this user follows
-    private int fCount;        // Actual number of followees (must be <= maxfCount)
+    private final String name;       // Name of this user
+    private int id;                  // ID of this user in its network, or -1 if the user is not in a network
+    private final Network network;   // The network of this user, or null
+    private final NameTable names;   // The dictionary that the followee IDs refer to
+    private final Adjacency follows; // IDs of the users that this user follows
+    private int maxFollowees;  // Maximum number of users this user can follow
+    private int followerCount; // Number of network users that follow this user
+    private volatile Adjacency followers; // IDs of the network users that follow this user, if the network tracks them
+    private boolean removed;   // whether this user was removed from its network
 
     /** Creates a user with an empty list of followees. */
     public User(String name) {
-        this.name = name;
-        this.follows = new String[maxfCount];
-        this.fCount = 0;
+        this(name, -1, null, new NameTable(maxfCount), maxfCount);
+        this.follows.ensureCapacity(maxfCount);
     }
 
     /** Creates a user with some followees for testing purposes. */
@@ -23,57 +31,218 @@ public class User {
         }
     }
 
+    /** Creates a network user with the given ID, who can follow up to maxFollowees users.
+     *  Followee IDs refer to the network's name table. */
+    User(String name, int id, Network network, NameTable names, int maxFollowees) {
+        this.name = name;
+        this.id = id;
+        this.network = network;
+        this.names = names;
+        this.follows = (network == null) ? new Adjacency(0) : network.newAdjacency();
+        this.maxFollowees = maxFollowees;
+    }
+
     public String getName() {
         return name;
     }
 
+    int getId() {
+        return id;
+    }
+
+    /** Returns true if this user was removed from its network. */
+    boolean isRemoved() {
+        return removed;
+    }
+
+    /** Marks this user as removed from its network. The network has already removed
+     *  all the follow relationships of this user, in both directions. */
+    void markRemoved() {
+        removed = true;
+        followerCount = 0;
+        if (followers != null) {
+            followers = network.newAdjacency();
+        }
+    }
+
+    /** Gives this user a new ID, and renumbers the IDs in its followee and follower lists.
+     *  newIds[id] is the new ID of the user with the given old ID, or -1 if that user is removed. */
+    void renumber(int newId, int[] newIds) {
+        id = newId;
+        follows.remap(newIds);
+        if (followers != null) {
+            followers.remap(newIds);
+        }
+    }
+
     public int getfCount() {
-        return fCount;
+        return follows.size();
     }
 
     public String[] getfFollows() {
+        int[] ids = follows.toArray();
+        String[] result = new String[Math.max(follows.capacity(), ids.length)];
+        for (int i = 0; i < ids.length; i++) {
+            result[i] = names.nameOf(ids[i]);
+        }
+        return result;
+    }
+
+    /** Returns the number of users in this user's network that follow this user. */
+    public int getFollowerCount() {
+        return followerCount;
+    }
+
+    /** Returns the list of IDs of the users that this user follows. */
+    Adjacency getFollowees() {
         return follows;
     }
 
+    /** Returns the list of IDs of the users that follow this user, or null if the network does not track it. */
+    Adjacency getFollowers() {
+        return followers;
+    }
+
+    /** Starts or stops keeping a list of the users that follow this user. A new list starts empty. */
+    void setTrackFollowers(boolean track) {
+        followers = track ? network.newAdjacency() : null;
+    }
+
+    /** Records that the user with the given ID started following this user. */
+    void followerAdded(int followerId) {
+        followerCount++;
+        if (followers != null) {
+            followers.add(followerId);
+        }
+    }
+
+    /** Records that the user with the given ID stopped following this user. */
+    void followerRemoved(int followerId) {
+        followerCount--;
+        if (followers != null) {
+            followers.remove(followerId);
+        }
+    }
+
+    void setMaxFollowees(int maxFollowees) {
+        this.maxFollowees = maxFollowees;
+    }
+
+    /** Makes sure that the followee list can take the given number of new followees, up to the limit,
+     *  without growing again. */
+    void ensureFolloweeCapacity(int newFollowees) {
+        follows.ensureCapacity((int) Math.min((long) follows.size() + newFollowees, maxFollowees));
+    }
+
+    /** Releases the unused capacity of the followee list. */
+    void trimToSize() {
+        follows.trimToSize();
+    }
+
+    /** Copies the IDs of this user's followees into the given array, starting at the given position.
+     *  Returns the number of IDs that were copied. */
+    int copyFolloweeIds(int[] dest, int start) {
+        follows.copyTo(dest, start);
+        return follows.size();
+    }
+
     /** Checks if this user follows a given username. */
     public boolean follows(String username) {
-        if (username == null) return false;
-        for (int i = 0; i < fCount; i++) {
-            if (follows[i].equalsIgnoreCase(username)) {
-                return true;
-            }
-        }
-        return false;
+        int followeeId = names.idOf(username);
+        return followeeId >= 0 && followsId(followeeId);
+    }
+
+    /** Checks if this user follows the user with the given ID. */
+    boolean followsId(int followeeId) {
+        return follows.contains(followeeId);
     }
 
     /** Adds a new followee. */
     public boolean addFollowee(String username) {
-        if (username == null || follows(username) || fCount >= maxfCount) {
+        // A network user can only follow users that are in the network.
+        // A user outside a network keeps its own dictionary, of the names that it follows, and can follow any name.
+        int followeeId = names.idOf(username);
+        if (network == null && followeeId < 0) {
+            if (username == null || removed || follows.size() >= maxFollowees) {
+                return false; // Checked before the name is added, so the dictionary only has followees
+            }
+            followeeId = names.add(username);
+        }
+        return followeeId >= 0 && addFolloweeId(followeeId);
+    }
+
+    /** Adds the user with the given ID as a new followee. */
+    boolean addFolloweeId(int followeeId) {
+        if (removed || follows.size() >= maxFollowees) {
             return false;
         }
-        follows[fCount++] = username;
+        if (network != null && network.isLogged()) {
+            // Logged only once the add is sure to succeed, and before it, so a failed write changes nothing
+            if (follows.contains(followeeId)) return false;
+            network.logFolloweeAdded(this, followeeId);
+        }
+        if (!follows.add(followeeId)) {
+            return false;
+        }
+        if (network != null) {
+            network.followeeAdded(this, followeeId);
+        }
         return true;
     }
 
     /** Removes a followee. */
     public boolean removeFollowee(String username) {
-        for (int i = 0; i < fCount; i++) {
-            if (follows[i].equalsIgnoreCase(username)) {
-                follows[i] = follows[--fCount]; // Replace with the last followee
-                follows[fCount] = null;        // Nullify the last slot
-                return true;
-            }
+        int followeeId = names.idOf(username);
+        if (followeeId < 0 || !removeFolloweeId(followeeId)) {
+            return false;
+        }
+        if (network == null) {
+            forgetName(followeeId);
+        }
+        return true;
+    }
+
+    /** Drops the name with the given ID, which this user no longer follows, from the dictionary
+     *  of a user outside a network. The names above it move down one ID, so the dictionary keeps
+     *  exactly the names of the followees. */
+    private void forgetName(int removedId) {
+        int size = names.size();
+        int[] newIds = new int[size];
+        for (int id = 0; id < size; id++) {
+            newIds[id] = (id < removedId) ? id : id - 1;
+        }
+        newIds[removedId] = -1;
+        names.compact(newIds, size - 1);
+        follows.remap(newIds);
+    }
+
+    /** Removes the user with the given ID from the followees. */
+    boolean removeFolloweeId(int followeeId) {
+        if (network != null && network.isLogged()) {
+            // Logged only once the removal is sure to succeed, and before it, so a failed write changes nothing
+            if (!follows.contains(followeeId)) return false;
+            network.logFolloweeRemoved(this, followeeId);
+        }
+        if (!follows.remove(followeeId)) { // The last followee takes the place of the removed one
+            return false;
+        }
+        if (network != null) {
+            network.followeeRemoved(this, followeeId);
         }
-        return false;
+        return true;
     }
 
     /** Counts mutual followees with another user. */
     public int countMutual(User other) {
         if (other == null) return 0;
 
+        if (other.names == names) {
+            return follows.countCommon(other.follows);
+        }
         int mutualCount = 0;
-        for (int i = 0; i < fCount; i++) {
-            if (other.follows(follows[i])) {
+        for (int followeeId : follows.toArray()) {
+            int otherId = other.names.idOf(names.keyOf(followeeId)); // The key is already folded
+            if (otherId >= 0 && other.followsId(otherId)) {
                 mutualCount++;
             }
         }
@@ -87,10 +256,29 @@ public class User {
 
     @Override
     public String toString() {
-        String result = name + " ->";
-        for (int i = 0; i < fCount; i++) {
-            result += " " + follows[i];
+        StringBuilder result = new StringBuilder(textLength());
+        try {
+            writeTo(result);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Never happens: StringBuilder does not throw
         }
-        return result;
+        return result.toString();
+    }
+
+    /** Writes the same text as toString to the given output. */
+    public void writeTo(Appendable out) throws IOException {
+        out.append(name).append(" ->");
+        for (int followeeId : follows.toArray()) {
+            out.append(' ').append(names.nameOf(followeeId));
+        }
+    }
+
+    /** Returns the length of the text that toString returns. */
+    int textLength() {
+        int length = name.length() + " ->".length();
+        for (int followeeId : follows.toArray()) {
+            length += 1 + names.nameOf(followeeId).length();
+        }
+        return length;
     }
 }